@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+/*  Generates the directories and the in-memory listings the benchmarks run on.
+ *  Directories are created once under java.io.tmpdir and reused by later runs,
+ *  since creating a million files takes minutes.
+ */
+final class DirectoryTrees {
+    /*  Roughly the mix of a camera or download folder. */
+    static final String[] EXTENSIONS = {"jpg", "png", "mp4", "txt", "pdf", "mp3", "apk", "zip"};
+    static final String[] FILTER_EXTENSIONS = {"jpg", "jpeg", "png", "gif", "webp", "mp4", "mkv", "mp3"};
+    static final int DIRECTORY_RATIO = 10;
+
+    private static final String ROOT = "filepicker-benchmark";
+    private static final String COMPLETE_MARKER = ".complete";
+
+    private DirectoryTrees() {
+    }
+
+    /**
+     * @return a directory holding 'entries' entries, one in DIRECTORY_RATIO
+     * of them a sub-directory, the others empty files.
+     */
+    static File flatDirectory(int entries) throws IOException {
+        File directory = new File(new File(System.getProperty("java.io.tmpdir"), ROOT), "flat-" + entries);
+        File marker = new File(directory, COMPLETE_MARKER);
+        if (marker.exists()) {
+            return directory;
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        Random random = new Random(entries);
+        //The marker is one of the entries.
+        for (int i = 1; i < entries; i++) {
+            File file = new File(directory, name(random, i));
+            if (i % DIRECTORY_RATIO == 0) {
+                file.mkdir();
+            } else {
+                file.createNewFile();
+            }
+        }
+        if (!marker.createNewFile()) {
+            throw new IOException("Cannot create " + marker);
+        }
+        return directory;
+    }
+
+    /**
+     * @return 'entries' items with random names, times and sizes, as a listing would produce.
+     */
+    static ArrayList<FileListItem> items(int entries) {
+        Random random = new Random(entries);
+        ArrayList<FileListItem> items = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            FileListItem item = new FileListItem();
+            String name = name(random, i);
+            item.setFilename(name);
+            item.setLocation("/storage/emulated/0/DCIM/Camera/" + name);
+            item.setDirectory(i % DIRECTORY_RATIO == 0);
+            item.setTime(1400000000000L + (random.nextLong() & 0xffffffffffL));
+            item.setSize(random.nextInt(1 << 30));
+            items.add(item);
+        }
+        return items;
+    }
+
+    static String name(Random random, int index) {
+        StringBuilder name = new StringBuilder(24);
+        //Mixed case, so that sort keys have something to fold.
+        name.append(random.nextBoolean() ? "IMG_" : "img_");
+        name.append(20100101 + random.nextInt(100000)).append('_').append(index);
+        if (index % DIRECTORY_RATIO != 0) {
+            name.append('.').append(EXTENSIONS[random.nextInt(EXTENSIONS.length)]);
+        }
+        return name.toString();
+    }
+}
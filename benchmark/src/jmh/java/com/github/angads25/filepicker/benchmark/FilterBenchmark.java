@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.utils.EntryFilter;
+import com.github.angads25.filepicker.utils.ExtensionFilter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+/*  Runs ExtensionFilter over every entry of a directory. acceptFiles() goes
+ *  through accept(File), which may stat; acceptNames() through the overload
+ *  used by the listings, with attributes already known. acceptRules() adds
+ *  an EntryFilter with a rule of each kind, checked in stages as listings do.
+ */
+@State(Scope.Benchmark)
+public class FilterBenchmark {
+    @Param({"100", "10000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"" + DialogConfigs.FILE_SELECT, "" + DialogConfigs.DIR_SELECT})
+    public int selectionType;
+
+    private ExtensionFilter filter;
+    private ExtensionFilter rules;
+    private File[] files;
+    private String[] names;
+    private boolean[] directories;
+
+    @Setup
+    public void setUp() throws IOException {
+        DialogProperties properties = new DialogProperties();
+        properties.extensions = DirectoryTrees.FILTER_EXTENSIONS;
+        properties.selection_type = selectionType;
+        filter = new ExtensionFilter(properties);
+        properties.entryFilter = new EntryFilter.Builder()
+                .showHidden(false)
+                .regex("(?i)img_2011.*")
+                .mimeType("image/*", "video/*")
+                .glob("img_*")
+                .sizeBetween(0, 1 << 29)
+                .build();
+        rules = new ExtensionFilter(properties);
+        File directory = DirectoryTrees.flatDirectory(entries);
+        files = directory.listFiles();
+        Random random = new Random(entries);
+        names = new String[entries];
+        directories = new boolean[entries];
+        for (int i = 0; i < entries; i++) {
+            names[i] = DirectoryTrees.name(random, i);
+            directories[i] = i % DirectoryTrees.DIRECTORY_RATIO == 0;
+        }
+    }
+
+    @Benchmark
+    public int acceptFiles() {
+        int accepted = 0;
+        for (File file : files) {
+            if (filter.accept(file)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int acceptNames() {
+        int accepted = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (filter.accept(names[i], directories[i], true)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    @Benchmark
+    public int acceptRules() {
+        int accepted = 0;
+        for (int i = 0; i < names.length; i++) {
+            if (rules.mayAccept(names[i]) && rules.accept(names[i], directories[i], true)
+                    && rules.acceptsAttributes(directories[i], 0, i)) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+}
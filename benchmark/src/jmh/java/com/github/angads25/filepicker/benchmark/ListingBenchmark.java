@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.controller.ListingBatchListener;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.utils.ExtensionFilter;
+import com.github.angads25.filepicker.utils.ListingUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/*  Lists a whole directory, as Utility.prepareFileListEntries() and
+ *  Utility.streamFileListEntries() do, both of which delegate to ListingUtils,
+ *  and into a CompactListing.
+ */
+@State(Scope.Benchmark)
+public class ListingBenchmark {
+    @Param({"100", "10000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"false", "true"})
+    public boolean filtered;
+
+    private File directory;
+    private ExtensionFilter filter;
+    private Comparator<FileListItem> sorter;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = DirectoryTrees.flatDirectory(entries);
+        DialogProperties properties = new DialogProperties();
+        properties.listingCache = null;
+        if (filtered) {
+            properties.extensions = DirectoryTrees.FILTER_EXTENSIONS;
+        }
+        filter = new ExtensionFilter(properties);
+        sorter = ListingUtils.createFileListItemsComparator(properties);
+    }
+
+    @Benchmark
+    public ArrayList<FileListItem> prepareFileListEntries() {
+        return ListingUtils.prepareFileListEntries(new ArrayList<FileListItem>(), directory, filter, sorter, new ListingStats());
+    }
+
+    @Benchmark
+    public ArrayList<FileListItem> streamFileListEntries(final Blackhole blackhole) {
+        return ListingUtils.streamFileListEntries(directory, filter, sorter, 48, 512, new ListingBatchListener() {
+            @Override
+            public void onBatchListed(List<FileListItem> batch) {
+                blackhole.consume(batch);
+            }
+        }, new ListingStats());
+    }
+
+    @Benchmark
+    public CompactListing prepareCompactListing() {
+        return ListingUtils.prepareCompactListing(directory, filter, DialogConfigs.SORT_BY_NAME, false, new ListingStats());
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.utils.SizeFormatter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+
+/*  Formats sizes spread over all the units, as Utility.formatSize() does
+ *  once its units have been read from resources.
+ */
+@State(Scope.Benchmark)
+public class SizeFormatBenchmark {
+    private static final int SIZES = 1024;
+
+    private SizeFormatter formatter;
+    private long[] sizes;
+    private StringBuilder builder;
+
+    @Setup
+    public void setUp() {
+        formatter = new SizeFormatter(new String[]{"B", "KB", "MB", "GB", "TB", "PB"});
+        Random random = new Random(SIZES);
+        sizes = new long[SIZES];
+        for (int i = 0; i < SIZES; i++) {
+            sizes[i] = random.nextLong() >>> (2 + random.nextInt(60));
+        }
+        builder = new StringBuilder(16);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZES)
+    public void formatSize(Blackhole blackhole) {
+        for (long size : sizes) {
+            blackhole.consume(formatter.format(size));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZES)
+    public void formatSizeTo(Blackhole blackhole) {
+        for (long size : sizes) {
+            builder.setLength(0);
+            formatter.formatTo(builder, size);
+            blackhole.consume(builder);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.utils.ListingUtils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+
+/*  Sorts a listing with each comparator of createFileListItemsComparator(),
+ *  directly and through sortEntries(), which sorts by date and size on
+ *  primitive keys. Each operation sorts a fresh copy of the same shuffled
+ *  listing.
+ */
+@State(Scope.Benchmark)
+public class SortBenchmark {
+    @Param({"100", "10000", "100000", "1000000"})
+    public int entries;
+
+    @Param({"" + DialogConfigs.SORT_BY_NAME, "" + DialogConfigs.SORT_BY_LAST_MODIFIED, "" + DialogConfigs.SORT_BY_SIZE})
+    public int sortBy;
+
+    @Param({"" + DialogConfigs.SORT_ORDER_NORMAL, "" + DialogConfigs.SORT_ORDER_REVERSE})
+    public int sortOrder;
+
+    private ArrayList<FileListItem> items;
+    private Comparator<FileListItem> comparator;
+
+    @Setup
+    public void setUp() {
+        items = DirectoryTrees.items(entries);
+        DialogProperties properties = new DialogProperties();
+        properties.sortBy = sortBy;
+        properties.sortOrder = sortOrder;
+        comparator = ListingUtils.createFileListItemsComparator(properties);
+    }
+
+    @Benchmark
+    public ArrayList<FileListItem> sort() {
+        ArrayList<FileListItem> copy = new ArrayList<>(items);
+        Collections.sort(copy, comparator);
+        return copy;
+    }
+
+    @Benchmark
+    public ArrayList<FileListItem> sortEntries() {
+        ArrayList<FileListItem> copy = new ArrayList<>(items);
+        ListingUtils.sortEntries(copy, comparator);
+        return copy;
+    }
+}
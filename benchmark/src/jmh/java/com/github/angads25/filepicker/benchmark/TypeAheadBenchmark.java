@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.benchmark;
+
+import com.github.angads25.filepicker.engine.TypeAheadFilter;
+import com.github.angads25.filepicker.model.FileListItem;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*  Types a query into a TypeAheadFilter over a listing, one key at a time.
+ *  typeQuery() narrows each key from the matches of the previous one, as the
+ *  dialog does; filterEachKey() scans the whole listing for every key.
+ */
+@State(Scope.Benchmark)
+public class TypeAheadBenchmark {
+    private static final String QUERY = "img_2011";
+
+    @Param({"100", "10000", "100000", "1000000"})
+    public int entries;
+
+    private ArrayList<FileListItem> items;
+    private TypeAheadFilter filter;
+
+    @Setup
+    public void setUp() {
+        items = DirectoryTrees.items(entries);
+        filter = new TypeAheadFilter();
+    }
+
+    @Benchmark
+    public int typeQuery() {
+        filter.setSource(items);
+        int shown = 0;
+        for (int i = 1; i <= QUERY.length(); i++) {
+            shown += filter.filter(QUERY.substring(0, i)).size();
+        }
+        return shown;
+    }
+
+    @Benchmark
+    public int filterEachKey() {
+        int shown = 0;
+        for (int i = 1; i <= QUERY.length(); i++) {
+            filter.setSource(items);
+            List<FileListItem> matches = filter.filter(QUERY.substring(0, i));
+            shown += matches.size();
+        }
+        return shown;
+    }
+}
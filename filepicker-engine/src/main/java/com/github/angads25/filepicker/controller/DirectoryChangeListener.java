@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Interface definition for a callback to be invoked when entries of a
+ * watched directory have been created, deleted, moved or modified.
+ */
+public interface DirectoryChangeListener {
+
+    /**
+     * Called once for a burst of changes.
+     *
+     * @param directory The watched directory.
+     * @param names     Names of the entries that changed, or null if the changes
+     *                  are unknown and the whole directory has to be listed again.
+     */
+    void onDirectoryChanged(File directory, Set<String> names);
+}
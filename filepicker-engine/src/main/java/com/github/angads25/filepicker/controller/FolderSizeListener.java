@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import com.github.angads25.filepicker.model.FolderSize;
+
+import java.util.List;
+
+/**
+ * Interface definition for a callback to be invoked each time the sizes
+ * of some directories have been computed.
+ */
+public interface FolderSizeListener {
+
+    /**
+     * Called with the sizes computed since the previous call.
+     *
+     * @param sizes Sizes of the directories, in no particular order.
+     */
+    void onFolderSizesComputed(List<FolderSize> sizes);
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.util.List;
+
+/**
+ * Interface definition for a callback to be invoked on the listing
+ * thread each time a batch of directory entries has been read.
+ */
+public interface ListingBatchListener {
+
+    /**
+     * Called when a batch of entries is ready.
+     *
+     * @param batch Sorted entries of the batch. The list is not reused afterwards.
+     */
+    void onBatchListed(List<FileListItem> batch);
+}
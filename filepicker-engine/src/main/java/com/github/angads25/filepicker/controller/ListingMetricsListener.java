@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller;
+
+import com.github.angads25.filepicker.model.ListingStats;
+
+import java.io.File;
+
+/**
+ * Interface definition for a callback to be invoked each time the user
+ * navigated to a directory and its first rows were shown.
+ */
+public interface ListingMetricsListener {
+
+    /**
+     * Called on the main thread, once the directory has been listed and its
+     * first rows bound.
+     *
+     * @param directory The directory navigated to.
+     * @param stats     Counts and timings of its listing, first bind included.
+     */
+    void onDirectoryShown(File directory, ListingStats stats);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller;
+
+/**
+ * Interface definition for the receiver of the trace sections of the
+ * engine, see {@link com.github.angads25.filepicker.utils.Tracing}.
+ */
+public interface SectionTracer {
+
+    /**
+     * Begins a section on the calling thread. Sections nest.
+     *
+     * @param name Name of the section, at most 127 characters.
+     */
+    void beginSection(String name);
+
+    /**
+     * Ends the innermost section begun on the calling thread.
+     */
+    void endSection();
+}
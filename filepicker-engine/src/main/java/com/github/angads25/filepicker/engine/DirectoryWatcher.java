@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.controller.DirectoryChangeListener;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/*  Watches a directory with a WatchService, for the headless engine. On
+ *  Android, use DirectoryObserver instead: WatchService needs Oreo.
+ *
+ *  Changes are coalesced: once a change is seen, more are collected until
+ *  none arrived for the quiet period, or for at most four quiet periods, so
+ *  that a burst of writes is reported once.
+ */
+@SuppressWarnings("NewApi")
+public class DirectoryWatcher implements Closeable {
+    public static final long DEFAULT_QUIET_PERIOD_MS = 250;
+
+    private final File directory;
+    private final long quietPeriodMillis;
+    private final DirectoryChangeListener listener;
+    private final WatchService service;
+    private final Thread thread;
+    //Only used on the watcher thread.
+    private boolean overflowed;
+
+    /**
+     * Starts watching 'directory'. The listener is called on a thread of the watcher.
+     */
+    public DirectoryWatcher(File directory, long quietPeriodMillis, DirectoryChangeListener listener) throws IOException {
+        this.directory = directory;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.listener = listener;
+        Path path = directory.toPath();
+        service = path.getFileSystem().newWatchService();
+        path.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "FilePicker-Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch() {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                HashSet<String> names = new HashSet<>();
+                overflowed = false;
+                boolean valid = collect(key, names);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(4 * quietPeriodMillis);
+                while (valid && System.nanoTime() < deadline) {
+                    key = service.poll(quietPeriodMillis, TimeUnit.MILLISECONDS);
+                    if (key == null) {
+                        break;
+                    }
+                    valid = collect(key, names);
+                }
+                listener.onDirectoryChanged(directory, overflowed ? null : names);
+                if (!valid) {
+                    //The directory itself is gone.
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            //Closed.
+        }
+    }
+
+    /*  Adds the names changed in the events of 'key' to 'names'. Returns false
+     *  if the key is no longer valid.
+     */
+    private boolean collect(WatchKey key, HashSet<String> names) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                //Events were lost, the whole directory will be listed again.
+                overflowed = true;
+            } else {
+                names.add(event.context().toString());
+            }
+        }
+        return key.reset();
+    }
+
+    /**
+     * Stops watching. Apart from a burst that is being reported already, no
+     * change is reported once this returns.
+     */
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        service.close();
+    }
+}
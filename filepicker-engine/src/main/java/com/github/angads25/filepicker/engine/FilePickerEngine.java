@@ -0,0 +1,637 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.controller.FolderSizeListener;
+import com.github.angads25.filepicker.controller.ListingBatchListener;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.DirectoryDelta;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.FolderSize;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.model.SelectionStore;
+import com.github.angads25.filepicker.utils.ExtensionFilter;
+import com.github.angads25.filepicker.utils.ListingCache;
+import com.github.angads25.filepicker.utils.ListingUtils;
+import com.github.angads25.filepicker.utils.StorageIndex;
+import com.github.angads25.filepicker.utils.Tracing;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/*  Android-free core of the file picker: lists, filters and sorts directories,
+ *  navigates between them and keeps the selection, all as configured by a
+ *  DialogProperties. FilePickerDialog is a view over it, and it can be driven
+ *  directly on a plain JVM or from a background service, eg. to pre-warm the
+ *  listing cache.
+ *
+ *  Listing methods may be called from any thread. Navigation state is not
+ *  synchronized and is meant to be used from a single thread.
+ */
+public class FilePickerEngine {
+    private final DialogProperties properties;
+    private final ExtensionFilter filter;
+    private final Comparator<FileListItem> sorter;
+    private final SelectionStore selection;
+    private final String cacheConfig;
+    private File currentDirectory;
+    private boolean showParent;
+
+    public FilePickerEngine(DialogProperties properties) {
+        this(properties, new SelectionStore());
+    }
+
+    public FilePickerEngine(DialogProperties properties, SelectionStore selection) {
+        this.properties = properties;
+        this.selection = selection;
+        filter = new ExtensionFilter(properties);
+        sorter = ListingUtils.createFileListItemsComparator(properties);
+        cacheConfig = ListingCache.configKey(properties);
+    }
+
+    public DialogProperties getProperties() {
+        return properties;
+    }
+
+    public ExtensionFilter getFilter() {
+        return filter;
+    }
+
+    public Comparator<FileListItem> getSorter() {
+        return sorter;
+    }
+
+    /**
+     * @return the files selected through this engine. Safe to read from any thread.
+     */
+    public SelectionStore getSelection() {
+        return selection;
+    }
+
+    // Navigation
+
+    /**
+     * Makes the initial directory the current one: the offset if it lies
+     * inside the root, else the root if it exists, else the error directory.
+     *
+     * @return the new current directory.
+     */
+    public File start() {
+        if (properties.offset.isDirectory() && isValidOffset()) {
+            currentDirectory = new File(properties.offset.getAbsolutePath());
+            showParent = true;
+        } else if (properties.root.exists() && properties.root.isDirectory()) {
+            currentDirectory = new File(properties.root.getAbsolutePath());
+            showParent = false;
+        } else {
+            currentDirectory = new File(properties.error_dir.getAbsolutePath());
+            showParent = false;
+        }
+        return currentDirectory;
+    }
+
+    private boolean isValidOffset() {
+        String offset_path = properties.offset.getAbsolutePath();
+        String root_path = properties.root.getAbsolutePath();
+        return !offset_path.equals(root_path) && offset_path.contains(root_path);
+    }
+
+    /**
+     * Makes 'directory' the current one, if it can be read.
+     *
+     * @return true if the current directory changed.
+     */
+    public boolean navigateTo(File directory) {
+        if (!directory.canRead()) {
+            return false;
+        }
+        setCurrentDirectory(directory);
+        return true;
+    }
+
+    /**
+     * Makes the parent of the current directory the current one, unless the
+     * current directory is the root or its parent can't be read.
+     *
+     * @return the new current directory, or null if it didn't change.
+     */
+    public File navigateUp() {
+        File parent = currentDirectory != null ? currentDirectory.getParentFile() : null;
+        if (parent == null || isRoot(currentDirectory) || !parent.canRead()) {
+            return null;
+        }
+        setCurrentDirectory(parent);
+        return parent;
+    }
+
+    private void setCurrentDirectory(File directory) {
+        currentDirectory = directory;
+        showParent = !isRoot(directory) && directory.getParentFile() != null;
+    }
+
+    /**
+     * @return true if 'directory' is the root of the picker. Compared by name,
+     * as the picker always did.
+     */
+    public boolean isRoot(File directory) {
+        return directory.getName().equals(properties.root.getName());
+    }
+
+    /**
+     * @return the current directory, or null before {@link #start()}.
+     */
+    public File getCurrentDirectory() {
+        return currentDirectory;
+    }
+
+    /**
+     * Creates the entry leading to the parent of the current directory.
+     *
+     * @param label Name shown for the entry, eg. "...".
+     * @return the entry, or null if the current directory has none.
+     */
+    public FileListItem createParentEntry(String label) {
+        if (currentDirectory == null || !showParent) {
+            return null;
+        }
+        FileListItem parent = new FileListItem();
+        parent.setFilename(label);
+        parent.setDirectory(true);
+        parent.setLocation(currentDirectory.getParentFile().getAbsolutePath());
+        parent.setTime(currentDirectory.lastModified());
+        parent.setSize(currentDirectory.length());
+        return parent;
+    }
+
+    // Listing
+
+    /**
+     * @return counters for a listing, timed if the properties have a metrics listener.
+     */
+    public ListingStats createListingStats() {
+        ListingStats stats = new ListingStats();
+        stats.setTimed(properties.metricsListener != null);
+        return stats;
+    }
+
+    /**
+     * Lists 'directory', filtered and sorted, without the parent entry. A
+     * listing that is still valid is taken from the cache of the properties,
+     * a complete new one is stored in it. If the calling thread is
+     * interrupted, or reading the directory fails part way, the partial
+     * result is not cached.
+     *
+     * @param stats Receives the number of entries read and stat calls made.
+     */
+    public List<FileListItem> listChildren(File directory, ListingStats stats) {
+        ListingCache cache = properties.listingCache;
+        List<FileListItem> children = getCached(cache, directory, stats);
+        if (children != null) {
+            return children;
+        }
+        Tracing.beginSection("FilePicker:list");
+        try {
+            long lastModified = directory.lastModified();
+            stats.addStatCalls(1);
+            ArrayList<FileListItem> listed = ListingUtils.prepareFileListEntries(new ArrayList<FileListItem>(),
+                    directory, filter, sorter, stats);
+            stats.setListedCount(listed.size());
+            if (cache != null && !stats.isIncomplete() && !Thread.currentThread().isInterrupted()) {
+                cache.put(directory, cacheConfig, lastModified, listed);
+            }
+            return listed;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Lists 'directory' into the listing cache of the properties ahead of a
+     * navigation to it, unless it is cached already. Gives up on directories
+     * of more than 'maxEntries' entries, too costly to list speculatively.
+     * Stops early if the calling thread is interrupted.
+     *
+     * @return the number of entries read, to be charged to the prefetch budget.
+     */
+    public int prefetchChildren(File directory, int maxEntries) {
+        ListingCache cache = properties.listingCache;
+        if (cache == null || cache.contains(directory, cacheConfig)) {
+            return 0;
+        }
+        Tracing.beginSection("FilePicker:prefetch");
+        try {
+            ListingStats stats = new ListingStats();
+            long lastModified = directory.lastModified();
+            ArrayList<FileListItem> listed = ListingUtils.prepareBoundedFileListEntries(directory, filter, sorter,
+                    maxEntries, stats);
+            if (listed != null && !Thread.currentThread().isInterrupted()) {
+                cache.put(directory, cacheConfig, lastModified, listed);
+            }
+            return stats.getEntryCount();
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Streaming variant of {@link #listChildren}. Entries are handed to
+     * 'listener' in sorted batches while the directory is read. A cached
+     * listing is returned at once without calling the listener.
+     *
+     * @return the complete listing, sorted.
+     */
+    public List<FileListItem> streamChildren(File directory, int firstBatchSize, int batchSize,
+                                             ListingBatchListener listener, ListingStats stats) {
+        ListingCache cache = properties.listingCache;
+        List<FileListItem> cached = getCached(cache, directory, stats);
+        if (cached != null) {
+            return cached;
+        }
+        Tracing.beginSection("FilePicker:stream");
+        try {
+            long lastModified = directory.lastModified();
+            stats.addStatCalls(1);
+            ArrayList<FileListItem> listed = ListingUtils.streamFileListEntries(directory, filter, sorter,
+                    firstBatchSize, batchSize, listener, stats);
+            stats.setListedCount(listed.size());
+            if (cache != null && !stats.isIncomplete() && !Thread.currentThread().isInterrupted()) {
+                cache.put(directory, cacheConfig, lastModified, listed);
+            }
+            return listed;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * @return true if directories can be listed lazily with the sort mode and
+     * the filter of the properties, ie. if neither needs the time or the size
+     * of entries.
+     */
+    public boolean canListLazily() {
+        return properties.sortBy != DialogConfigs.SORT_BY_LAST_MODIFIED && properties.sortBy != DialogConfigs.SORT_BY_SIZE
+                && !filter.needsAttributes();
+    }
+
+    /**
+     * Lazy variant of {@link #listChildren}: the time and size of the entries
+     * are left pending, see {@link #readAttributes}. A cached listing, which
+     * is complete, is still preferred. Lazy listings are not cached.
+     */
+    public List<FileListItem> listChildrenLazily(File directory, ListingStats stats) {
+        List<FileListItem> cached = getCached(properties.listingCache, directory, stats);
+        if (cached != null) {
+            return cached;
+        }
+        Tracing.beginSection("FilePicker:listLazily");
+        try {
+            ArrayList<FileListItem> listed = ListingUtils.prepareLazyFileListEntries(new ArrayList<FileListItem>(),
+                    directory, filter, sorter, stats);
+            stats.setListedCount(listed.size());
+            return listed;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Compact variant of {@link #listChildren}: the entries are kept in
+     * columns, see {@link CompactListing}. Compact listings are not cached.
+     */
+    public CompactListing listChildrenCompact(File directory, ListingStats stats) {
+        Tracing.beginSection("FilePicker:listCompact");
+        try {
+            CompactListing listing = ListingUtils.prepareCompactListing(directory, filter, properties.sortBy,
+                    properties.sortOrder == DialogConfigs.SORT_ORDER_REVERSE, stats);
+            stats.setListedCount(listing.size());
+            return listing;
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /**
+     * Reads the time and size of entries listed lazily. Stops early if the
+     * calling thread is interrupted.
+     *
+     * @return copies of the entries read, with their attributes.
+     */
+    public ArrayList<FileListItem> readAttributes(List<FileListItem> items) {
+        ArrayList<FileListItem> read = new ArrayList<>(items.size());
+        Tracing.beginSection("FilePicker:readAttributes");
+        try {
+            for (FileListItem item : items) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                FileListItem copy = item.copy();
+                ListingUtils.readAttributes(copy);
+                read.add(copy);
+            }
+        } finally {
+            Tracing.endSection();
+        }
+        return read;
+    }
+
+    private List<FileListItem> getCached(ListingCache cache, File directory, ListingStats stats) {
+        if (cache == null) {
+            return null;
+        }
+        //Validating a cached listing stats the directory itself.
+        stats.addStatCalls(1);
+        List<FileListItem> cached = cache.get(directory, cacheConfig);
+        if (cached != null) {
+            stats.setCacheHit(true);
+            stats.setListedCount(cached.size());
+        }
+        return cached;
+    }
+
+    /**
+     * Lists the current directory, with the parent entry on top.
+     */
+    public ArrayList<FileListItem> listCurrentDirectory() {
+        ArrayList<FileListItem> entries = new ArrayList<>();
+        FileListItem parent = createParentEntry(FileListItem.PARENT_DIR_NAME);
+        if (parent != null) {
+            entries.add(parent);
+        }
+        entries.addAll(listChildren(currentDirectory, new ListingStats()));
+        return entries;
+    }
+
+    /**
+     * Reads the current state of the entries of 'directory' named in 'names',
+     * eg. reported by a {@link DirectoryWatcher}. The cached listing of the
+     * directory is dropped, as files modified in place would not invalidate it.
+     *
+     * @return the delta to apply to the listing, see {@link #applyChanges}.
+     */
+    public DirectoryDelta readChanges(File directory, Collection<String> names) {
+        ListingCache cache = properties.listingCache;
+        if (cache != null) {
+            cache.invalidate(directory);
+        }
+        HashSet<String> locations = new HashSet<>();
+        ArrayList<FileListItem> entries = new ArrayList<>();
+        for (String name : names) {
+            locations.add(new File(directory, name).getAbsolutePath());
+        }
+        //Same stat calls and rules as a listing: a vanished entry is skipped, and so is an unreadable one.
+        ListingUtils.listNamedEntries(directory, names, filter, new ListingStats(), entries);
+        ListingUtils.sortEntries(entries, sorter);
+        return new DirectoryDelta(directory, locations, entries);
+    }
+
+    /**
+     * Applies 'delta' to a sorted listing, in place: the changed entries are
+     * removed, and their current state merged back.
+     */
+    public void applyChanges(ArrayList<FileListItem> listing, DirectoryDelta delta) {
+        Set<String> changed = delta.getChangedLocations();
+        int kept = 0;
+        for (int i = 0; i < listing.size(); i++) {
+            FileListItem item = listing.get(i);
+            if (item.isParentEntry() || !changed.contains(item.getLocation())) {
+                listing.set(kept++, item);
+            }
+        }
+        listing.subList(kept, listing.size()).clear();
+        ListingUtils.mergeSortedEntries(listing, delta.getEntries(), sorter);
+    }
+
+    /**
+     * @return true if the size of the content of the listed directories is to
+     * be computed, see {@link #computeFolderSizes}.
+     */
+    public boolean needsFolderSizes() {
+        return properties.folderSizes || properties.sortBy == DialogConfigs.SORT_BY_SIZE;
+    }
+
+    /**
+     * Computes the size of the content of the directories of 'listing', the
+     * parent entry aside, blocking. Sizes are handed to 'listener' on the
+     * calling thread as they are computed. Stops early if the calling thread
+     * is interrupted.
+     */
+    public void computeFolderSizes(List<FileListItem> listing, FolderSizeListener listener) {
+        ArrayList<File> directories = new ArrayList<>();
+        for (FileListItem item : listing) {
+            if (item.isDirectory() && !item.isParentEntry()) {
+                directories.add(new File(item.getLocation()));
+            }
+        }
+        if (!directories.isEmpty()) {
+            Tracing.beginSection("FilePicker:folderSizes");
+            try {
+                FolderSizeCalculator.getDefault().computeAll(directories, listener);
+            } finally {
+                Tracing.endSection();
+            }
+        }
+    }
+
+    /**
+     * Sets computed sizes on the entries of a listing, in place. The entries
+     * are replaced by updated copies, so that list differs see the change.
+     * The order is kept, see {@link #sortByFolderSizes}.
+     *
+     * @return true if any entry changed.
+     */
+    public boolean applyFolderSizes(ArrayList<FileListItem> listing, List<FolderSize> sizes) {
+        HashMap<String, FolderSize> byLocation = new HashMap<>();
+        for (FolderSize size : sizes) {
+            byLocation.put(size.getLocation(), size);
+        }
+        boolean changed = false;
+        for (int i = 0; i < listing.size(); i++) {
+            FileListItem item = listing.get(i);
+            FolderSize size = item.isDirectory() && !item.isParentEntry() ? byLocation.get(item.getLocation()) : null;
+            if (size != null && (size.getSize() != item.getContentSize() || size.getItemCount() != item.getItemCount())) {
+                item = item.copy();
+                item.setContentSize(size.getSize());
+                item.setItemCount(size.getItemCount());
+                listing.set(i, item);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Sorts a listing again once the sizes of its directories are known, if
+     * the sort mode depends on them. A full sort, to be run in background.
+     *
+     * @return true if the listing was sorted.
+     */
+    public boolean sortByFolderSizes(ArrayList<FileListItem> listing) {
+        if (properties.sortBy != DialogConfigs.SORT_BY_SIZE) {
+            return false;
+        }
+        ListingUtils.sortEntries(listing, sorter);
+        return true;
+    }
+
+    /**
+     * @return the content of 'directory' according to the storage index of the
+     * properties, filtered and sorted, or null if it is not indexed. May be stale.
+     */
+    public List<FileListItem> listIndexed(File directory) {
+        StorageIndex index = properties.storageIndex;
+        return index != null ? index.list(directory, filter, sorter) : null;
+    }
+
+    /**
+     * @return the entries of the subtree of 'directory' whose name contains
+     * 'query', according to the storage index of the properties, or null if
+     * the subtree is not wholly indexed, see {@link StorageIndex#containsSubtree}.
+     * May be stale.
+     */
+    public ArrayList<FileListItem> searchIndexed(File directory, String query) {
+        StorageIndex index = properties.storageIndex;
+        if (index == null || !index.containsSubtree(directory)) {
+            return null;
+        }
+        return index.findByName(directory, query, filter, sorter);
+    }
+
+    /**
+     * Creates a search of the subtree of 'directory' for the names containing
+     * 'query', filtered and sorted as the listings are. See {@link FileSearch}.
+     */
+    public FileSearch createSearch(File directory, String query) {
+        return new FileSearch(directory, query, filter, sorter);
+    }
+
+    // Selection
+
+    /**
+     * Creates the entry describing 'file', as the listing would.
+     */
+    public FileListItem createItem(File file) {
+        FileListItem item = new FileListItem();
+        item.setFilename(file.getName());
+        item.setDirectory(file.isDirectory());
+        item.setLocation(file.getAbsolutePath());
+        item.setTime(file.lastModified());
+        item.setSize(file.length());
+        return item;
+    }
+
+    /**
+     * @return true if the selection type allows selecting 'file'.
+     */
+    public boolean canSelect(File file) {
+        switch (properties.selection_type) {
+            case DialogConfigs.DIR_SELECT:
+                return file.exists() && file.isDirectory();
+            case DialogConfigs.FILE_SELECT:
+                return file.exists() && file.isFile();
+            case DialogConfigs.FILE_AND_DIR_SELECT:
+                return file.exists() && (file.isFile() || file.isDirectory());
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if the current directory itself is selected when the
+     * selection is confirmed, ie. single mode allowing directories.
+     */
+    public boolean selectsCurrentDirectory() {
+        return properties.selection_mode == DialogConfigs.SINGLE_MODE &&
+                (properties.selection_type == DialogConfigs.DIR_SELECT ||
+                        properties.selection_type == DialogConfigs.FILE_AND_DIR_SELECT);
+    }
+
+    /**
+     * Marks the given paths as selected, skipping those the selection type
+     * doesn't allow. In single mode only the first path is considered.
+     */
+    public void markPaths(List<String> paths) {
+        if (paths == null || paths.isEmpty()) {
+            return;
+        }
+        if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
+            paths = paths.subList(0, 1);
+        }
+        for (String path : paths) {
+            File file = new File(path);
+            if (canSelect(file)) {
+                FileListItem item = createItem(file);
+                item.setMarked(true);
+                selection.addSelectedItem(item);
+            }
+        }
+    }
+
+    /**
+     * Selects 'item'. In single mode it replaces the previous selection.
+     */
+    public void select(FileListItem item) {
+        if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
+            selection.addSingleFile(item);
+        } else {
+            selection.addSelectedItem(item);
+        }
+    }
+
+    public void deselect(FileListItem item) {
+        selection.removeSelectedItem(item.getLocation());
+    }
+
+    /**
+     * @return true if the files of a whole subtree can be selected at once,
+     * see {@link #createExpansion}, ie. multi mode allowing files.
+     */
+    public boolean canSelectContents() {
+        return properties.selection_mode == DialogConfigs.MULTI_MODE
+                && properties.selection_type != DialogConfigs.DIR_SELECT;
+    }
+
+    /**
+     * Creates the expansion of the subtree of 'directory' into the paths of
+     * the files it holds, filtered as the listings are. See {@link SubtreeExpansion}.
+     */
+    public SubtreeExpansion createExpansion(File directory) {
+        return new SubtreeExpansion(directory, filter);
+    }
+
+    /**
+     * Selects the files at 'paths', eg. found by a {@link SubtreeExpansion}.
+     * May be called from any thread.
+     */
+    public void selectPaths(Collection<String> paths) {
+        selection.addSelectedPaths(paths);
+    }
+
+    /**
+     * Selects the current directory itself, replacing the previous selection.
+     */
+    public void selectCurrentDirectory() {
+        selection.addSingleFile(createItem(currentDirectory));
+    }
+}
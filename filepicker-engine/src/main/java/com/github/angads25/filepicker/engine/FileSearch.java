@@ -0,0 +1,247 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.controller.ListingBatchListener;
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.utils.ExtensionFilter;
+import com.github.angads25.filepicker.utils.ListingUtils;
+import com.github.angads25.filepicker.utils.Tracing;
+import com.github.angads25.filepicker.utils.WalkerPool;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/*  Searches the subtree of a directory for the entries whose name contains a
+ *  query, ignoring case. Entries are filtered as in a listing. Directories are
+ *  walked in parallel on the shared work-stealing WalkerPool, while the calling
+ *  thread hands the matches found so far to the listener. Platforms without
+ *  ForkJoinPool, ie. before Lollipop, walk the tree on the calling thread.
+ *
+ *  A search runs once. It stops early when cancelled or when the calling
+ *  thread is interrupted.
+ */
+public class FileSearch {
+    //Symbolic links are not followed, the walk never goes deeper than this either.
+    private static final int MAX_DEPTH = 64;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final File directory;
+    private final String query;
+    private final ExtensionFilter filter;
+    private final Comparator<FileListItem> sorter;
+    private final ConcurrentLinkedQueue<FileListItem> found;
+    private volatile boolean cancelled;
+    private volatile ForkJoinTask<?> task;
+
+    /**
+     * @param directory Directory whose subtree is searched. Not itself a match.
+     * @param query     Text to look for in the names. Not empty.
+     * @param filter    Extension filter class reference, for filtering files.
+     * @param sorter    Comparator used to sort each batch and the final list.
+     */
+    public FileSearch(File directory, String query, ExtensionFilter filter, Comparator<FileListItem> sorter) {
+        this.directory = directory;
+        this.query = query;
+        this.filter = filter;
+        this.sorter = sorter;
+        found = new ConcurrentLinkedQueue<>();
+    }
+
+    /**
+     * Runs the search, blocking until it completes or is cancelled. Matches
+     * are handed to 'listener' in sorted batches, on the calling thread.
+     *
+     * @return all the matches, sorted. Partial if the search was cancelled.
+     */
+    public ArrayList<FileListItem> run(ListingBatchListener listener) {
+        ArrayList<FileListItem> matches = new ArrayList<>();
+        Tracing.beginSection("FilePicker:search");
+        try {
+            if (WalkerPool.AVAILABLE) {
+                runParallel(matches, listener);
+            } else {
+                walk(directory, 0, matches, listener);
+            }
+            ListingUtils.sortEntries(matches, sorter);
+        } finally {
+            Tracing.endSection();
+        }
+        return matches;
+    }
+
+    @SuppressWarnings("NewApi")
+    private void runParallel(ArrayList<FileListItem> matches, ListingBatchListener listener) {
+        ForkJoinTask<?> task = WalkerPool.get().submit(new DirectoryTask(directory, 0));
+        this.task = task;
+        if (cancelled) {
+            task.cancel(false);
+        }
+        while (!task.isDone()) {
+            try {
+                task.get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                //Still walking, deliver what has been found so far.
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                break;
+            } catch (CancellationException | ExecutionException e) {
+                break;
+            }
+            deliver(matches, listener);
+        }
+        deliver(matches, listener);
+    }
+
+    private void deliver(ArrayList<FileListItem> matches, ListingBatchListener listener) {
+        if (found.isEmpty()) {
+            return;
+        }
+        ArrayList<FileListItem> batch = new ArrayList<>();
+        FileListItem item;
+        while ((item = found.poll()) != null) {
+            batch.add(item);
+        }
+        ListingUtils.sortEntries(batch, sorter);
+        matches.addAll(batch);
+        listener.onBatchListed(batch);
+    }
+
+    /*  Sequential walk, on the calling thread.
+     */
+    private void walk(File dir, int depth, ArrayList<FileListItem> matches, ListingBatchListener listener) {
+        if (isCancelled()) {
+            return;
+        }
+        List<File> subdirectories = visit(dir, depth);
+        deliver(matches, listener);
+        for (File subdirectory : subdirectories) {
+            walk(subdirectory, depth + 1, matches, listener);
+        }
+    }
+
+    /*  Lists 'dir', queues the matching entries and returns the subdirectories
+     *  to walk next. A linked directory may match, but is not walked, so that
+     *  a link loop or an aliased subtree does not repeat matches. Items are
+     *  made for the matches only, most entries of a large tree are not.
+     */
+    private List<File> visit(File dir, final int depth) {
+        String path = dir.getAbsolutePath();
+        final String prefix = path.endsWith(DialogConfigs.DIRECTORY_SEPERATOR) ? path
+                : path + DialogConfigs.DIRECTORY_SEPERATOR;
+        final ArrayList<File> subdirectories = new ArrayList<>();
+        ListingUtils.listEntries(dir, filter, new ListingStats(), new ListingUtils.EntrySink() {
+            @Override
+            public void offer(String name, boolean directory, long time, long size) {
+                boolean match = containsIgnoreCase(name, query);
+                if (!match && !directory) {
+                    return;
+                }
+                String location = prefix + name;
+                if (directory && depth < MAX_DEPTH && !ListingUtils.isSymbolicLink(new File(location))) {
+                    subdirectories.add(new File(location));
+                }
+                if (match) {
+                    FileListItem item = new FileListItem();
+                    item.setFilename(name);
+                    item.setDirectory(directory);
+                    item.setLocation(location);
+                    item.setTime(time);
+                    item.setSize(size);
+                    found.add(item);
+                }
+            }
+
+            //The workers of the pool are never interrupted, a large directory is given up on here.
+            @Override
+            public boolean isCancelled() {
+                return FileSearch.this.isCancelled();
+            }
+        });
+        return subdirectories;
+    }
+
+    private boolean isCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            cancelled = true;
+        }
+        return cancelled;
+    }
+
+    private static boolean containsIgnoreCase(String name, String query) {
+        int last = name.length() - query.length();
+        for (int i = 0; i <= last; i++) {
+            if (name.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Stops the search. May be called from any thread.
+     */
+    public void cancel() {
+        cancelled = true;
+        ForkJoinTask<?> task = this.task;
+        if (task != null) {
+            task.cancel(false);
+        }
+    }
+
+    /*  Visits one directory, and forks a task for each of its subdirectories.
+     */
+    //Never serialized, ForkJoinTask only happens to be Serializable.
+    @SuppressWarnings({"NewApi", "serial"})
+    private class DirectoryTask extends RecursiveAction {
+        private final File dir;
+        private final int depth;
+
+        DirectoryTask(File dir, int depth) {
+            this.dir = dir;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            if (cancelled) {
+                return;
+            }
+            List<File> subdirectories = visit(dir, depth);
+            if (subdirectories.isEmpty()) {
+                return;
+            }
+            ArrayList<DirectoryTask> tasks = new ArrayList<>(subdirectories.size());
+            for (File subdirectory : subdirectories) {
+                tasks.add(new DirectoryTask(subdirectory, depth + 1));
+            }
+            invokeAll(tasks);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.controller.FolderSizeListener;
+import com.github.angads25.filepicker.model.FolderSize;
+import com.github.angads25.filepicker.utils.ListingUtils;
+import com.github.angads25.filepicker.utils.WalkerPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/*  Computes the size of the content of directories, ie. the sum of the sizes
+ *  of all the files of their subtree. Subtrees are walked in parallel on the
+ *  WalkerPool, or on the calling thread before Lollipop.
+ *
+ *  Every directory walked is summarized, with its own files and its
+ *  subdirectories, and the summary is kept until the last-modified time of
+ *  the directory changes. Computing the size of a known subtree again only
+ *  costs one stat per directory then, instead of one per file. Like
+ *  ListingCache, this misses files rewritten in place, and like it, keeps a
+ *  bounded number of summaries, the least recently used are dropped first.
+ */
+public class FolderSizeCalculator {
+    public static final int DEFAULT_MAX_SUMMARIES = 50000;
+    //Symbolic links may loop before Oreo, the walk never goes deeper than this.
+    private static final int MAX_DEPTH = 64;
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private static FolderSizeCalculator defaultInstance;
+
+    private final LinkedHashMap<String, Summary> summaries;
+    private final int maxSummaries;
+
+    public FolderSizeCalculator() {
+        this(DEFAULT_MAX_SUMMARIES);
+    }
+
+    /**
+     * @param maxSummaries Maximum number of directories whose summary is kept.
+     */
+    public FolderSizeCalculator(int maxSummaries) {
+        if (maxSummaries <= 0) {
+            throw new IllegalArgumentException("maxSummaries <= 0");
+        }
+        this.maxSummaries = maxSummaries;
+        //Access ordered, so that iteration starts at the least recently used summary.
+        summaries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the process-wide calculator, whose summaries are shared by all dialogs,
+     * at most {@value #DEFAULT_MAX_SUMMARIES} of them.
+     */
+    public static synchronized FolderSizeCalculator getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new FolderSizeCalculator();
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Computes the size of each of 'directories', blocking until all are
+     * known. Sizes are handed to 'listener' on the calling thread as they
+     * are computed. Stops early if the calling thread is interrupted.
+     */
+    public void computeAll(List<File> directories, FolderSizeListener listener) {
+        if (WalkerPool.AVAILABLE) {
+            computeParallel(directories, listener);
+            return;
+        }
+        for (File directory : directories) {
+            long size = walk(directory, 0);
+            if (Thread.currentThread().isInterrupted()) {
+                return;
+            }
+            listener.onFolderSizesComputed(Collections.singletonList(createSize(directory, size)));
+        }
+    }
+
+    @SuppressWarnings("NewApi")
+    private void computeParallel(List<File> directories, FolderSizeListener listener) {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        ArrayList<SizeTask> pending = new ArrayList<>(directories.size());
+        for (File directory : directories) {
+            SizeTask task = new SizeTask(directory, 0, cancelled);
+            WalkerPool.get().execute(task);
+            pending.add(task);
+        }
+        try {
+            while (!pending.isEmpty()) {
+                try {
+                    pending.get(0).get(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException | ExecutionException | CancellationException e) {
+                    //Collected below with the others.
+                }
+                ArrayList<FolderSize> sizes = new ArrayList<>();
+                Iterator<SizeTask> tasks = pending.iterator();
+                while (tasks.hasNext()) {
+                    SizeTask task = tasks.next();
+                    if (task.isDone()) {
+                        tasks.remove();
+                        if (!task.isCompletedNormally()) {
+                            continue;
+                        }
+                        sizes.add(createSize(task.directory, task.getRawResult()));
+                    }
+                }
+                if (!sizes.isEmpty()) {
+                    listener.onFolderSizesComputed(sizes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            //The tasks already forked see it and return at once.
+            cancelled.set(true);
+        }
+    }
+
+    private FolderSize createSize(File directory, long size) {
+        //Known already unless evicted by the walk of a large subtree, a single stat then.
+        Summary summary = summarize(directory);
+        return new FolderSize(directory.getAbsolutePath(), size, summary.entryCount);
+    }
+
+    /*  Sequential walk, on the calling thread.
+     */
+    private long walk(File directory, int depth) {
+        if (Thread.currentThread().isInterrupted()) {
+            return 0;
+        }
+        Summary summary = summarize(directory);
+        long size = summary.fileBytes;
+        if (depth < MAX_DEPTH) {
+            for (String name : summary.subdirectories) {
+                size += walk(new File(directory, name), depth + 1);
+            }
+        }
+        return size;
+    }
+
+    /*  Returns the summary of 'directory', listing it only if it changed.
+     */
+    private Summary summarize(File directory) {
+        String path = directory.getAbsolutePath();
+        long lastModified = directory.lastModified();
+        Summary summary;
+        synchronized (summaries) {
+            summary = summaries.get(path);
+        }
+        if (summary != null && summary.lastModified == lastModified) {
+            return summary;
+        }
+        summary = ListingUtils.hasNioFiles() ? readSummary(directory, lastModified)
+                : listSummary(directory, lastModified);
+        if (!Thread.currentThread().isInterrupted()) {
+            synchronized (summaries) {
+                summaries.put(path, summary);
+                if (summaries.size() > maxSummaries) {
+                    Iterator<Summary> eldest = summaries.values().iterator();
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+        }
+        return summary;
+    }
+
+    /*  Oreo and above: links are not followed, so that a linked file or
+     *  directory is only counted where it really is.
+     */
+    @SuppressWarnings("NewApi")
+    private static Summary readSummary(File directory, long lastModified) {
+        long bytes = 0;
+        int count = 0;
+        ArrayList<String> subdirectories = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.toPath())) {
+            for (Path path : stream) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    continue;
+                }
+                count++;
+                if (attributes.isDirectory()) {
+                    subdirectories.add(path.getFileName().toString());
+                } else if (attributes.isRegularFile()) {
+                    bytes += attributes.size();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            //Unreadable, counted as empty.
+        }
+        return new Summary(lastModified, bytes, count, subdirectories);
+    }
+
+    /*  Before Oreo, links can't be told apart cheaply and are followed.
+     */
+    private static Summary listSummary(File directory, long lastModified) {
+        long bytes = 0;
+        ArrayList<String> subdirectories = new ArrayList<>();
+        String[] names = directory.list();
+        if (names == null) {
+            return new Summary(lastModified, 0, 0, subdirectories);
+        }
+        for (String name : names) {
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+            File file = new File(directory, name);
+            if (file.isDirectory()) {
+                subdirectories.add(name);
+            } else {
+                bytes += file.length();
+            }
+        }
+        return new Summary(lastModified, bytes, names.length, subdirectories);
+    }
+
+    public void clear() {
+        synchronized (summaries) {
+            summaries.clear();
+        }
+    }
+
+    /*  Own files and subdirectories of a directory.
+     */
+    private static final class Summary {
+        final long lastModified;
+        final long fileBytes;
+        final int entryCount;
+        final String[] subdirectories;
+
+        Summary(long lastModified, long fileBytes, int entryCount, List<String> subdirectories) {
+            this.lastModified = lastModified;
+            this.fileBytes = fileBytes;
+            this.entryCount = entryCount;
+            this.subdirectories = subdirectories.toArray(new String[subdirectories.size()]);
+        }
+    }
+
+    /*  Sums the files of a directory and, through forked tasks, of its subdirectories.
+     */
+    //Never serialized, ForkJoinTask only happens to be Serializable.
+    @SuppressWarnings({"NewApi", "serial"})
+    private class SizeTask extends RecursiveTask<Long> {
+        final File directory;
+        private final int depth;
+        private final AtomicBoolean cancelled;
+
+        SizeTask(File directory, int depth, AtomicBoolean cancelled) {
+            this.directory = directory;
+            this.depth = depth;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Long compute() {
+            if (cancelled.get()) {
+                return 0L;
+            }
+            Summary summary = summarize(directory);
+            long size = summary.fileBytes;
+            if (depth >= MAX_DEPTH || summary.subdirectories.length == 0) {
+                return size;
+            }
+            ArrayList<SizeTask> tasks = new ArrayList<>(summary.subdirectories.length);
+            for (String name : summary.subdirectories) {
+                tasks.add(new SizeTask(new File(directory, name), depth + 1, cancelled));
+            }
+            invokeAll(tasks);
+            for (SizeTask task : tasks) {
+                size += task.getRawResult();
+            }
+            return size;
+        }
+    }
+}
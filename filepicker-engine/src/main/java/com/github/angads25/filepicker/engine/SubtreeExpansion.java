@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.utils.ExtensionFilter;
+import com.github.angads25.filepicker.utils.ListingUtils;
+import com.github.angads25.filepicker.utils.Tracing;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*  Expands the subtree of a directory into the paths of the files it holds
+ *  that pass the filter, eg. to select them all at once. The walk is
+ *  iterative, depth first, and reads one directory at a time through
+ *  ListingUtils.listEntries(), which hands out names and attributes without
+ *  making a FileListItem. Besides the paths found, memory is bounded by the
+ *  directories still to visit. Linked directories are not walked, so that no
+ *  file is selected, nor counted, twice under aliased paths.
+ *
+ *  The running count and size of the files found can be read from any thread
+ *  while the walk runs. An expansion runs once. It stops early when cancelled
+ *  or when the calling thread is interrupted.
+ */
+public class SubtreeExpansion {
+    //Symbolic links are not followed, the walk never goes deeper than this either.
+    private static final int MAX_DEPTH = 64;
+    private static final int RUNNING = 0, COMPLETE = 1, CANCELLED = 2;
+
+    private final File directory;
+    private final ExtensionFilter filter;
+    private final AtomicInteger state = new AtomicInteger(RUNNING);
+    //Written by the walking thread only.
+    private volatile int fileCount;
+    private volatile long totalSize;
+
+    /**
+     * @param directory Directory whose subtree is expanded.
+     * @param filter    Extension filter class reference, for filtering files and directories.
+     */
+    public SubtreeExpansion(File directory, ExtensionFilter filter) {
+        this.directory = directory;
+        this.filter = filter;
+    }
+
+    /**
+     * Walks the subtree, blocking until it has been walked or the expansion
+     * is cancelled.
+     *
+     * @return the paths of the files accepted by the filter, in walk order.
+     * Partial if the expansion was cancelled, see {@link #complete()}.
+     */
+    public ArrayList<String> run() {
+        final ArrayList<String> paths = new ArrayList<>();
+        final ArrayDeque<Pending> pending = new ArrayDeque<>();
+        pending.push(new Pending(directory.getAbsolutePath(), 0));
+        ListingStats stats = new ListingStats();
+        Tracing.beginSection("FilePicker:expand");
+        try {
+            while (!pending.isEmpty() && !isCancelled()) {
+                final Pending next = pending.pop();
+                final String prefix = next.path.endsWith(DialogConfigs.DIRECTORY_SEPERATOR) ? next.path
+                        : next.path + DialogConfigs.DIRECTORY_SEPERATOR;
+                ListingUtils.listEntries(new File(next.path), filter, stats, new ListingUtils.EntrySink() {
+                    @Override
+                    public void offer(String name, boolean directory, long time, long size) {
+                        if (!directory) {
+                            paths.add(prefix + name);
+                            fileCount++;
+                            totalSize += size;
+                        } else if (next.depth < MAX_DEPTH
+                                && !ListingUtils.isSymbolicLink(new File(prefix + name))) {
+                            pending.push(new Pending(prefix + name, next.depth + 1));
+                        }
+                    }
+
+                    @Override
+                    public boolean isCancelled() {
+                        return state.get() == CANCELLED;
+                    }
+                });
+            }
+        } finally {
+            Tracing.endSection();
+        }
+        return paths;
+    }
+
+    /**
+     * Marks the expansion as complete, unless it was cancelled before. Once
+     * complete it can no longer be cancelled, so that its result is either
+     * used whole or not at all.
+     *
+     * @return true if the expansion is complete, false if it was cancelled.
+     */
+    public boolean complete() {
+        return state.compareAndSet(RUNNING, COMPLETE) || state.get() == COMPLETE;
+    }
+
+    /**
+     * Stops the expansion, unless it is complete already. May be called from
+     * any thread.
+     *
+     * @return true if the expansion is cancelled.
+     */
+    public boolean cancel() {
+        return state.compareAndSet(RUNNING, CANCELLED) || state.get() == CANCELLED;
+    }
+
+    private boolean isCancelled() {
+        if (Thread.currentThread().isInterrupted()) {
+            cancel();
+        }
+        return state.get() == CANCELLED;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the number of files found so far.
+     */
+    public int getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * @return the size in bytes of the files found so far.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    private static class Pending {
+        final String path;
+        final int depth;
+
+        Pending(String path, int depth) {
+            this.path = path;
+            this.depth = depth;
+        }
+    }
+}
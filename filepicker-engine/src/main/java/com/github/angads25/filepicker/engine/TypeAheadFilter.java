@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.engine;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/*  Narrows a loaded listing down to the entries whose name contains a query,
+ *  ignoring case, as the query is typed. Names are matched on their sort key,
+ *  normalized and case-folded once when the entry was made, so that filtering
+ *  neither allocates nor folds per entry. A query extending the previous one
+ *  only scans the entries that matched the previous one.
+ *
+ *  The entry leading to the parent directory always matches.
+ */
+public class TypeAheadFilter {
+    private List<FileListItem> source = Collections.emptyList();
+    private List<FileListItem> matches = source;
+    private String query = "";
+
+    /**
+     * Sets the listing to filter, eg. once it changed. The next call to
+     * {@link #filter} scans it whole.
+     *
+     * @param source The listing, in the order it is shown. Not modified.
+     */
+    public void setSource(List<FileListItem> source) {
+        this.source = source;
+        matches = source;
+        query = "";
+    }
+
+    /**
+     * @param text Text typed, as is.
+     * @return the entries of the source whose name contains 'text', in the
+     * order of the source. The source itself if 'text' is empty. Must not be
+     * modified.
+     */
+    public List<FileListItem> filter(String text) {
+        String normalized = normalize(text);
+        if (normalized.isEmpty()) {
+            matches = source;
+        } else if (!normalized.equals(query)) {
+            List<FileListItem> candidates = !query.isEmpty() && normalized.startsWith(query) ? matches : source;
+            ArrayList<FileListItem> narrowed = new ArrayList<>();
+            for (int i = 0, size = candidates.size(); i < size; i++) {
+                FileListItem item = candidates.get(i);
+                if (item.isParentEntry() || item.getSortKey().contains(normalized)) {
+                    narrowed.add(item);
+                }
+            }
+            matches = narrowed;
+        }
+        query = normalized;
+        return matches;
+    }
+
+    /**
+     * @return the query last filtered with, normalized. Empty if none.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Normalizes typed text the way the sort keys of the names are, see
+     * {@link FileListItem#createSortKey}.
+     */
+    public static String normalize(String text) {
+        return FileListItem.createSortKey(text);
+    }
+
+    /**
+     * @param query Normalized query, see {@link #normalize}.
+     * @return the offset in the name of 'item' of the first match of 'query',
+     * eg. to highlight it, or -1 if there is none. Also -1 when normalizing
+     * changed the length of the name, offsets in the key then don't map to
+     * the name.
+     */
+    public static int matchStart(FileListItem item, String query) {
+        String key = item.getSortKey();
+        if (key.length() != item.getFilename().length()) {
+            return -1;
+        }
+        return key.indexOf(query);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.model;
+
+import com.github.angads25.filepicker.utils.ListingUtils;
+
+import java.io.File;
+import java.util.Arrays;
+
+/*  A directory listing kept in columns instead of one FileListItem per entry:
+ *  the names packed in one char[] with their offsets, the times and sizes in
+ *  long[], and whether entries are directories in a bitset. Locations are not
+ *  kept, they are derived from the directory when asked for. An entry takes
+ *  about 20 bytes plus two per character of its name, where a FileListItem
+ *  with its name, sort key and location takes 150 bytes and more, most of
+ *  them repeating the path of the directory.
+ *
+ *  Entries are in sorted order, without the parent entry. A listing is
+ *  immutable once built, and can be read from any thread.
+ */
+public class CompactListing {
+    private final File directory;
+    private final String directoryPath;
+    private final int count;
+    private final char[] names;
+    private final int[] nameOffsets;
+    private final long[] times;
+    private final long[] sizes;
+    private final long[] directories;
+
+    private CompactListing(File directory, int count, char[] names, int[] nameOffsets, long[] times,
+                           long[] sizes, long[] directories) {
+        this.directory = directory;
+        this.directoryPath = directory.getAbsolutePath();
+        this.count = count;
+        this.names = names;
+        this.nameOffsets = nameOffsets;
+        this.times = times;
+        this.sizes = sizes;
+        this.directories = directories;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the buffer all the names are packed in. Must not be modified.
+     * Read it with {@link #getNameStart} and {@link #getNameLength}, eg. to
+     * show a name without creating a String.
+     */
+    public char[] getNameBuffer() {
+        return names;
+    }
+
+    public int getNameStart(int index) {
+        return nameOffsets[index];
+    }
+
+    public int getNameLength(int index) {
+        return nameOffsets[index + 1] - nameOffsets[index];
+    }
+
+    /**
+     * @return the name of the entry at 'index', as a new String.
+     */
+    public String getName(int index) {
+        return new String(names, nameOffsets[index], getNameLength(index));
+    }
+
+    /**
+     * @return the absolute path of the entry at 'index', as a new String.
+     */
+    public String getLocation(int index) {
+        StringBuilder location = new StringBuilder(directoryPath.length() + 1 + getNameLength(index));
+        location.append(directoryPath);
+        if (!directoryPath.endsWith(DialogConfigs.DIRECTORY_SEPERATOR)) {
+            location.append(DialogConfigs.DIRECTORY_SEPERATOR);
+        }
+        return location.append(names, nameOffsets[index], getNameLength(index)).toString();
+    }
+
+    public boolean isDirectory(int index) {
+        return (directories[index >> 6] & (1L << index)) != 0;
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    /**
+     * @return a new FileListItem for the entry at 'index', eg. when it is
+     * clicked or selected.
+     */
+    public FileListItem toItem(int index) {
+        FileListItem item = new FileListItem();
+        item.setFilename(getName(index));
+        item.setDirectory(isDirectory(index));
+        item.setLocation(getLocation(index));
+        item.setTime(times[index]);
+        item.setSize(sizes[index]);
+        return item;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactListing[" + directoryPath + ", entries=" + count + ", chars=" + nameOffsets[count] + "]";
+    }
+
+    /**
+     * Collects the entries of a directory in directory order, then builds the
+     * listing in sorted order. Not thread safe.
+     */
+    public static class Builder {
+        private final File directory;
+        private int count;
+        private char[] names = new char[1024];
+        private int[] nameOffsets = new int[65];
+        private long[] times = new long[64];
+        private long[] sizes = new long[64];
+        private long[] directories = new long[1];
+
+        public Builder(File directory) {
+            this.directory = directory;
+        }
+
+        public void add(String name, boolean directory, long time, long size) {
+            if (count == times.length) {
+                int capacity = count * 2;
+                nameOffsets = Arrays.copyOf(nameOffsets, capacity + 1);
+                times = Arrays.copyOf(times, capacity);
+                sizes = Arrays.copyOf(sizes, capacity);
+                directories = Arrays.copyOf(directories, (capacity + 63) >> 6);
+            }
+            int start = nameOffsets[count];
+            int end = start + name.length();
+            if (end > names.length) {
+                names = Arrays.copyOf(names, Math.max(end, names.length * 2));
+            }
+            name.getChars(0, name.length(), names, start);
+            nameOffsets[count + 1] = end;
+            times[count] = time;
+            sizes[count] = size;
+            if (directory) {
+                directories[count >> 6] |= 1L << count;
+            }
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public String getName(int index) {
+            return new String(names, nameOffsets[index], nameOffsets[index + 1] - nameOffsets[index]);
+        }
+
+        public boolean isDirectory(int index) {
+            return (directories[index >> 6] & (1L << index)) != 0;
+        }
+
+        public long getTime(int index) {
+            return times[index];
+        }
+
+        public long getSize(int index) {
+            return sizes[index];
+        }
+
+        /**
+         * @param order Indices of the entries added, in the order of the listing.
+         *              See {@link ListingUtils#sortCompact}.
+         */
+        public CompactListing build(int[] order) {
+            int length = nameOffsets[count];
+            char[] sortedNames = new char[length];
+            int[] sortedOffsets = new int[order.length + 1];
+            long[] sortedTimes = new long[order.length];
+            long[] sortedSizes = new long[order.length];
+            long[] sortedDirectories = new long[(order.length + 63) >> 6];
+            int offset = 0;
+            for (int i = 0; i < order.length; i++) {
+                int from = order[i];
+                int nameLength = nameOffsets[from + 1] - nameOffsets[from];
+                System.arraycopy(names, nameOffsets[from], sortedNames, offset, nameLength);
+                sortedOffsets[i] = offset;
+                offset += nameLength;
+                sortedTimes[i] = times[from];
+                sortedSizes[i] = sizes[from];
+                if (isDirectory(from)) {
+                    sortedDirectories[i >> 6] |= 1L << i;
+                }
+            }
+            sortedOffsets[order.length] = offset;
+            return new CompactListing(directory, order.length, sortedNames, sortedOffsets, sortedTimes,
+                    sortedSizes, sortedDirectories);
+        }
+    }
+}
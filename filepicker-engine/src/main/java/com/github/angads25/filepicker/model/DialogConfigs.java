@@ -72,4 +72,42 @@ public abstract class DialogConfigs {
     public static final int SORT_ORDER_NORMAL = 0;
 
     public static final int SORT_ORDER_REVERSE = 1;
-}
+
+    /*  LISTING_MODES*/
+
+    /*  LISTING_MODE_BULK lists the whole directory before showing any entry.
+     *  It is the default Listing Mode.
+     */
+    public static final int LISTING_MODE_BULK = 0;
+
+    /*  LISTING_MODE_STREAMING enumerates the directory in batches, so that the
+     *  first entries are shown while the rest of the directory is still read.
+     */
+    public static final int LISTING_MODE_STREAMING = 1;
+
+    /*  LISTING_MODE_LAZY only reads the name and the type of the entries to show
+     *  the list. Sizes and dates are read for the rows in sight, as they come
+     *  into view. Sorting or filtering by date or size needs them all, and lists
+     *  in bulk.
+     */
+    public static final int LISTING_MODE_LAZY = 2;
+
+    /*  LISTING_MODE_COMPACT keeps the directory in columns rather than one object
+     *  per entry, for directories of 100k entries and more. It is shown in a
+     *  ListView whatever the List Type. Folder sizes are not computed, and any
+     *  change to the directory lists it again.
+     */
+    public static final int LISTING_MODE_COMPACT = 3;
+
+    /*  LIST_TYPES*/
+
+    /*  LIST_TYPE_LIST_VIEW shows the files in a ListView, refreshed as a whole.
+     *  It is the default List Type.
+     */
+    public static final int LIST_TYPE_LIST_VIEW = 0;
+
+    /*  LIST_TYPE_RECYCLER_VIEW shows the files in a RecyclerView. Refreshes are
+     *  diffed in background and only the rows that changed are bound again.
+     */
+    public static final int LIST_TYPE_RECYCLER_VIEW = 1;
+}
\ No newline at end of file
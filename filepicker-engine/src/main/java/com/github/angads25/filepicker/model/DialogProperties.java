@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+import com.github.angads25.filepicker.controller.ListingMetricsListener;
+import com.github.angads25.filepicker.utils.EntryFilter;
+import com.github.angads25.filepicker.utils.ListingCache;
+import com.github.angads25.filepicker.utils.StorageIndex;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Created by Angad Singh on 11-07-2016.
+ * </p>
+ */
+
+/*  Descriptor class to define properties of the Dialog. Actions are performed upon
+ *  these Properties
+ */
+public class DialogProperties {
+    /**
+     * Selection Mode defines whether a single of multiple Files/Directories
+     * have to be selected.
+     * <p>
+     * SINGLE_MODE and MULTI_MODE are the two selection modes, See DialogConfigs
+     * for more info. Set to SINGLE_MODE as default value by constructor.
+     */
+    public int selection_mode;
+
+    /**
+     * Selection Type defines that whether a File/Directory or both of these has
+     * to be selected.
+     * <p>
+     * FILE_SELECT ,DIR_SELECT, FILE_AND_DIR_SELECT are the three selection modes,
+     * See DialogConfigs for more info. Set to FILE_SELECT as default value by constructor.
+     */
+    public int selection_type;
+
+    /**
+     * The Parent/Root Directory. List of Files are populated from here. Can be set
+     * to any readable directory. /sdcard is the default location.
+     * <p>
+     * Eg. /sdcard
+     * Eg. /mnt
+     */
+    public File root;
+
+    /**
+     * The Directory is used when Root Directory is not readable or accessible. /
+     * sdcard is the default location.
+     * <p>
+     * Eg. /sdcard
+     * Eg. /mnt
+     */
+    public File error_dir;
+
+    /**
+     * The Directory can be used as an offset. It is the first directory that is
+     * shown in dialog. Consider making it Root's sub-directory.
+     * <p>
+     * Eg. Root: /sdcard
+     * Eg. Offset: /sdcard/Music/Country
+     */
+    public File offset;
+
+    /**
+     * An Array of String containing extensions, Files with only that will be shown.
+     * Others will be ignored. Set to null as default value by constructor.
+     * Eg. String ext={"jpg","jpeg","png","gif"};
+     */
+    public String[] extensions;
+
+    /**
+     * Further rules files have to pass, on top of the extensions: globs, regular
+     * expressions, MIME types, size and date ranges, hidden files. See
+     * EntryFilter.Builder. Set to null as default value by constructor.
+     * Eg. new EntryFilter.Builder().mimeType("image/*").sizeBetween(0, 1 << 20).build()
+     */
+    public EntryFilter entryFilter;
+
+    public int sortBy;
+
+    public int sortOrder;
+
+    /**
+     * Listing Mode defines how the content of a directory is delivered to the list.
+     * <p>
+     * LISTING_MODE_BULK, LISTING_MODE_STREAMING, LISTING_MODE_LAZY and LISTING_MODE_COMPACT
+     * are the four listing modes, See DialogConfigs for more info. Set to LISTING_MODE_BULK as default value by constructor.
+     */
+    public int listingMode;
+
+    /**
+     * List Type defines which widget shows the list of Files/Directories.
+     * <p>
+     * LIST_TYPE_LIST_VIEW and LIST_TYPE_RECYCLER_VIEW are the two list types, See
+     * DialogConfigs for more info. Set to LIST_TYPE_LIST_VIEW as default value by constructor.
+     */
+    public int listType;
+
+    /**
+     * Cache of directory listings, so that revisiting a directory does not list it
+     * again. Hit, miss and eviction counts can be read from it. Set to null to
+     * disable caching. Set to the process-wide ListingCache.getDefault() by constructor.
+     */
+    public ListingCache listingCache;
+
+    /**
+     * Shows a search box above the list. Typing in it searches the whole subtree of
+     * the current directory for names containing the text, matches are shown as
+     * they are found. Set to false as default value by constructor.
+     */
+    public boolean searchEnabled;
+
+    /**
+     * Shows a filter box above the list. Typing in it narrows the entries already
+     * listed down to those whose name contains the text, highlighted, without
+     * reading the directory again. Not shown in compact listing mode. Set to false
+     * as default value by constructor.
+     */
+    public boolean filterEnabled;
+
+    /**
+     * Persistent index of the storage, used to show a directory before it has been
+     * listed and to answer searches without walking the tree. It is kept up to date
+     * by StorageIndex.update(), eg. from a background service. Set to null as
+     * default value by constructor.
+     */
+    public StorageIndex storageIndex;
+
+    /**
+     * Watches the directory shown, so that files created, deleted or modified
+     * meanwhile are reflected in the list. Bursts of changes are applied at once.
+     * Set to true as default value by constructor.
+     */
+    public boolean liveUpdates;
+
+    /**
+     * Computes the size of the content of the directories shown, in background, and
+     * shows it under their name. Always done when sorting by size, so that directories
+     * are sorted by it. Set to false as default value by constructor.
+     */
+    public boolean folderSizes;
+
+    /**
+     * Shows a thumbnail of images and videos instead of the file icon. Thumbnails
+     * are made in background and cached in memory and on disk. Set to false as
+     * default value by constructor.
+     */
+    public boolean thumbnails;
+
+    /**
+     * Lists the first subdirectories in sight in background, at a lower priority
+     * than the directory shown and within a bounded number of entries, so that
+     * tapping one of them shows its content at once. Needs the listing cache, and
+     * does nothing in compact listing mode. Set to false as default value by constructor.
+     */
+    public boolean prefetchDirectories;
+
+    /**
+     * Long pressing a directory selects every file of its subtree that passes the
+     * filters, found in background while a dialog shows their running count and
+     * size. Only in multi mode with files selectable. Set to false as default
+     * value by constructor.
+     */
+    public boolean selectFolderContents;
+
+    /**
+     * Receives the counts and timings of each directory navigated to: listing, stats,
+     * filtering, sorting and first bind, and whether the listing was cached. Set to
+     * null as default value by constructor.
+     */
+    public ListingMetricsListener metricsListener;
+
+    public DialogProperties() {
+        selection_mode = DialogConfigs.SINGLE_MODE;
+        selection_type = DialogConfigs.FILE_SELECT;
+        root = new File(DialogConfigs.DEFAULT_DIR);
+        error_dir = new File(DialogConfigs.DEFAULT_DIR);
+        offset = new File(DialogConfigs.DEFAULT_DIR);
+        extensions = null;
+        entryFilter = null;
+        sortBy = DialogConfigs.SORT_BY_NAME;
+        sortOrder = DialogConfigs.SORT_ORDER_NORMAL;
+        listingMode = DialogConfigs.LISTING_MODE_BULK;
+        listType = DialogConfigs.LIST_TYPE_LIST_VIEW;
+        listingCache = ListingCache.getDefault();
+        searchEnabled = false;
+        filterEnabled = false;
+        storageIndex = null;
+        liveUpdates = true;
+        folderSizes = false;
+        thumbnails = false;
+        prefetchDirectories = false;
+        selectFolderContents = false;
+        metricsListener = null;
+    }
+}
\ No newline at end of file
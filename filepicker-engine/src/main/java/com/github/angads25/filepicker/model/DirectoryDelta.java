@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Set;
+
+/**
+ * Changes to the listing of a directory: the entries that changed, and the
+ * current state of those that still belong to the listing.
+ */
+public class DirectoryDelta {
+    private final File directory;
+    private final Set<String> changedLocations;
+    private final ArrayList<FileListItem> entries;
+
+    public DirectoryDelta(File directory, Set<String> changedLocations, ArrayList<FileListItem> entries) {
+        this.directory = directory;
+        this.changedLocations = changedLocations;
+        this.entries = entries;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the locations of the entries that changed. Their previous state is
+     * to be removed from the listing.
+     */
+    public Set<String> getChangedLocations() {
+        return changedLocations;
+    }
+
+    /**
+     * @return the changed entries that are still listed, sorted.
+     */
+    public ArrayList<FileListItem> getEntries() {
+        return entries;
+    }
+
+    public boolean isEmpty() {
+        return changedLocations.isEmpty();
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+/* <p>
+ * Created by Angad Singh on 09-07-2016.
+ * </p>
+ */
+
+import java.text.Normalizer;
+import java.util.Locale;
+
+/**
+ * The model/container class holding file list data.
+ */
+public class FileListItem implements Comparable<FileListItem> {
+    /*  Name of the entry leading to the parent directory, see label_parent_dir.
+     */
+    public static final String PARENT_DIR_NAME = "...";
+
+    private String filename, location;
+    private String sortKey;
+    private boolean directory, marked, parentEntry, attributesPending;
+    private long time;
+    private long size;
+    private long contentSize = -1;
+    private int itemCount = -1;
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+        this.sortKey = createSortKey(filename);
+        this.parentEntry = PARENT_DIR_NAME.equals(filename);
+    }
+
+    /**
+     * @return the normalized, case-folded name used to sort entries by name.
+     * It is computed once, when the name is set, so that comparisons don't allocate.
+     */
+    public String getSortKey() {
+        return sortKey;
+    }
+
+    /**
+     * @return true if this is the entry leading to the parent directory.
+     */
+    public boolean isParentEntry() {
+        return parentEntry;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    public void setLocation(String location) {
+        this.location = location;
+    }
+
+    public boolean isDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(boolean directory) {
+        this.directory = directory;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public void setTime(long time) {
+        this.time = time;
+    }
+
+    public boolean isMarked() {
+        return marked;
+    }
+
+    public void setMarked(boolean marked) {
+        this.marked = marked;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
+
+    /**
+     * @return for a directory, the sum of the sizes of the files of its subtree,
+     * or -1 if it has not been computed. See FolderSizeCalculator.
+     */
+    public long getContentSize() {
+        return contentSize;
+    }
+
+    public void setContentSize(long contentSize) {
+        this.contentSize = contentSize;
+    }
+
+    /**
+     * @return for a directory, the number of entries directly inside it, or -1
+     * if it has not been computed.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(int itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    /**
+     * @return true if the time and size have not been read yet, see
+     * DialogConfigs.LISTING_MODE_LAZY.
+     */
+    public boolean isAttributesPending() {
+        return attributesPending;
+    }
+
+    public void setAttributesPending(boolean attributesPending) {
+        this.attributesPending = attributesPending;
+    }
+
+    /**
+     * @return a copy of this item, eg. to change an item already handed to a list differ.
+     */
+    public FileListItem copy() {
+        FileListItem item = new FileListItem();
+        item.filename = filename;
+        item.location = location;
+        item.sortKey = sortKey;
+        item.directory = directory;
+        item.marked = marked;
+        item.parentEntry = parentEntry;
+        item.attributesPending = attributesPending;
+        item.time = time;
+        item.size = size;
+        item.contentSize = contentSize;
+        item.itemCount = itemCount;
+        return item;
+    }
+
+    @Override
+    public int compareTo(FileListItem fileListItem) {
+        if (fileListItem.isDirectory() && isDirectory()) {   //If the comparison is between two directories, return the directory with
+            //alphabetic order first.
+            return sortKey.compareTo(fileListItem.getSortKey());
+        } else if (!fileListItem.isDirectory() && !isDirectory()) {   //If the comparison is not between two directories, return the file with
+            //alphabetic order first.
+            return sortKey.compareTo(fileListItem.getSortKey());
+        } else if (fileListItem.isDirectory() && !isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
+            return 1;
+        } else {   //Same as above but order of occurence is different.
+            return -1;
+        }
+    }
+
+    /**
+     * Builds the key names are sorted with. ASCII names, by far the most common,
+     * are folded to lower case by hand, and returned as is when there is nothing
+     * to fold. Other names are composed first, so that the same name written in
+     * NFC and NFD sorts as one, and are folded independently of the default
+     * Locale, which would turn 'I' into a dotless 'i' in Turkish.
+     */
+    public static String createSortKey(String name) {
+        if (name == null) {
+            return null;
+        }
+        int length = name.length();
+        int firstUpper = -1;
+        for (int i = 0; i < length; i++) {
+            char c = name.charAt(i);
+            if (c >= 0x80) {
+                return Normalizer.normalize(name, Normalizer.Form.NFC).toLowerCase(Locale.ROOT);
+            }
+            if (firstUpper < 0 && c >= 'A' && c <= 'Z') {
+                firstUpper = i;
+            }
+        }
+        if (firstUpper < 0) {
+            return name;
+        }
+        char[] chars = name.toCharArray();
+        for (int i = firstUpper; i < length; i++) {
+            char c = chars[i];
+            if (c >= 'A' && c <= 'Z') {
+                chars[i] = (char) (c + ('a' - 'A'));
+            }
+        }
+        return new String(chars);
+    }
+}
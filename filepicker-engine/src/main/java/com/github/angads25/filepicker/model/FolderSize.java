@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+/**
+ * Size of the content of a directory, computed by walking its subtree.
+ */
+public class FolderSize {
+    private final String location;
+    private final long size;
+    private final int itemCount;
+
+    public FolderSize(String location, long size, int itemCount) {
+        this.location = location;
+        this.size = size;
+        this.itemCount = itemCount;
+    }
+
+    public String getLocation() {
+        return location;
+    }
+
+    /**
+     * @return the sum of the sizes of all the files of the subtree.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of files and directories directly inside the directory.
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+/**
+ * Counters and timings collected while listing a single directory. Stat and
+ * filter times are summed over the entries, and are part of the listing time.
+ * They are only measured for timed stats, the clock is read several times per
+ * entry otherwise, see {@link #setTimed}.
+ */
+public class ListingStats {
+    private int entryCount;
+    private int listedCount;
+    private int statCount;
+    private boolean cacheHit;
+    private boolean incomplete;
+    private boolean timed;
+    private long listingTimeNanos;
+    private long statTimeNanos;
+    private long filterTimeNanos;
+    private long sortTimeNanos;
+    private long firstBindTimeNanos = -1;
+
+    /**
+     * @return the number of directory entries that were read, before filtering.
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    public void addEntries(int count) {
+        entryCount += count;
+    }
+
+    /**
+     * @return the number of entries listed, after filtering.
+     */
+    public int getListedCount() {
+        return listedCount;
+    }
+
+    public void setListedCount(int listedCount) {
+        this.listedCount = listedCount;
+    }
+
+    /**
+     * @return the number of filesystem calls made to read attributes of the entries.
+     */
+    public int getStatCount() {
+        return statCount;
+    }
+
+    public void addStatCalls(int count) {
+        statCount += count;
+    }
+
+    /**
+     * @return true if the listing came from the listing cache. The hit rate over
+     * all listings is kept by the cache itself.
+     */
+    public boolean isCacheHit() {
+        return cacheHit;
+    }
+
+    public void setCacheHit(boolean cacheHit) {
+        this.cacheHit = cacheHit;
+    }
+
+    /**
+     * @return true if the directory could not be opened, or reading it failed
+     * part way. The entries listed, if any, are then only some of them and
+     * must neither be cached nor indexed.
+     */
+    public boolean isIncomplete() {
+        return incomplete;
+    }
+
+    public void setIncomplete(boolean incomplete) {
+        this.incomplete = incomplete;
+    }
+
+    /**
+     * @return true if the stat and filter times are measured.
+     */
+    public boolean isTimed() {
+        return timed;
+    }
+
+    public void setTimed(boolean timed) {
+        this.timed = timed;
+    }
+
+    /**
+     * @return the current time to measure stat and filter calls from, or 0
+     * if these are not timed, so that the clock is not read for nothing.
+     */
+    public long now() {
+        return timed ? System.nanoTime() : 0;
+    }
+
+    public long getListingTimeNanos() {
+        return listingTimeNanos;
+    }
+
+    public void setListingTimeNanos(long listingTimeNanos) {
+        this.listingTimeNanos = listingTimeNanos;
+    }
+
+    /**
+     * @return the time spent reading attributes of the entries.
+     */
+    public long getStatTimeNanos() {
+        return statTimeNanos;
+    }
+
+    public void addStatTime(long nanos) {
+        statTimeNanos += nanos;
+    }
+
+    /**
+     * @return the time spent in the extension filter.
+     */
+    public long getFilterTimeNanos() {
+        return filterTimeNanos;
+    }
+
+    public void addFilterTime(long nanos) {
+        filterTimeNanos += nanos;
+    }
+
+    /**
+     * @return the time spent sorting the complete listing.
+     */
+    public long getSortTimeNanos() {
+        return sortTimeNanos;
+    }
+
+    public void addSortTime(long nanos) {
+        sortTimeNanos += nanos;
+    }
+
+    /**
+     * @return the time from the navigation to the first row bound on screen,
+     * or -1 if not measured.
+     */
+    public long getFirstBindTimeNanos() {
+        return firstBindTimeNanos;
+    }
+
+    public void setFirstBindTimeNanos(long firstBindTimeNanos) {
+        this.firstBindTimeNanos = firstBindTimeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ListingStats[entries=" + entryCount + ", listed=" + listedCount + ", stats=" + statCount
+                + ", cacheHit=" + cacheHit + ", incomplete=" + incomplete + ", time=" + (listingTimeNanos / 1000) + "us, stat="
+                + (statTimeNanos / 1000) + "us, filter=" + (filterTimeNanos / 1000) + "us, sort="
+                + (sortTimeNanos / 1000) + "us, firstBind=" + (firstBindTimeNanos / 1000) + "us]";
+    }
+}
@@ -16,9 +16,6 @@
 
 package com.github.angads25.filepicker.model;
 
-import java.util.HashMap;
-import java.util.Set;
-
 /**
  * <p>
  * Created by Angad Singh on 11-07-2016.
@@ -28,42 +25,40 @@ import java.util.Set;
 /*  SingleTon containing <Key,Value> pair of all the selected files.
  *  Key: Directory/File path.
  *  Value: FileListItem Object.
+ *
+ *  Deprecated: FilePickerDialog keeps its selection in a SelectionStore of its
+ *  own, see FilePickerDialog.getSelectionStore(). This process-wide list is no
+ *  longer filled by the dialog.
  */
+@Deprecated
 public class MarkedItemList {
-    private static HashMap<String, FileListItem> ourInstance = new HashMap<>();
+    private static final SelectionStore ourInstance = new SelectionStore();
 
     public static void addSelectedItem(FileListItem item) {
-        ourInstance.put(item.getLocation(), item);
+        ourInstance.addSelectedItem(item);
     }
 
     public static void removeSelectedItem(String key) {
-        ourInstance.remove(key);
+        ourInstance.removeSelectedItem(key);
     }
 
     public static boolean hasItem(String key) {
-        return ourInstance.containsKey(key);
+        return ourInstance.hasItem(key);
     }
 
     public static void clearSelectionList() {
-        ourInstance = new HashMap<>();
+        ourInstance.clearSelectionList();
     }
 
     public static void addSingleFile(FileListItem item) {
-        ourInstance = new HashMap<>();
-        ourInstance.put(item.getLocation(), item);
+        ourInstance.addSingleFile(item);
     }
 
     public static String[] getSelectedPaths() {
-        Set<String> paths = ourInstance.keySet();
-        String fpaths[] = new String[paths.size()];
-        int i = 0;
-        for (String path : paths) {
-            fpaths[i++] = path;
-        }
-        return fpaths;
+        return ourInstance.getSelectedPaths();
     }
 
     public static int getFileCount() {
-        return ourInstance.size();
+        return ourInstance.getFileCount();
     }
 }
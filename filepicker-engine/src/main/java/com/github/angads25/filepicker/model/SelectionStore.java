@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*  Paths of the files selected in one dialog. Only the paths are kept, so
+ *  that a whole subtree can be selected without holding an item per file.
+ *
+ *  Reads never block, so that rows can be bound while loaders add or remove
+ *  items. Writes are serialized, which keeps addSingleFile() atomic with
+ *  respect to other writers. The selected paths are kept as an immutable
+ *  snapshot, rebuilt on the first read following a change.
+ */
+public class SelectionStore {
+    private static final String[] EMPTY = new String[0];
+
+    private final Set<String> items = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private volatile String[] snapshot = EMPTY;
+
+    public boolean hasItem(String key) {
+        return items.contains(key);
+    }
+
+    public int getFileCount() {
+        return items.size();
+    }
+
+    public synchronized void addSelectedItem(FileListItem item) {
+        items.add(item.getLocation());
+        snapshot = null;
+    }
+
+    /**
+     * Adds all the items at once, the snapshot is rebuilt once only.
+     */
+    public synchronized void addSelectedItems(Collection<FileListItem> selected) {
+        for (FileListItem item : selected) {
+            items.add(item.getLocation());
+        }
+        snapshot = null;
+    }
+
+    /**
+     * Adds all the paths at once, the snapshot is rebuilt once only.
+     */
+    public synchronized void addSelectedPaths(Collection<String> paths) {
+        items.addAll(paths);
+        snapshot = null;
+    }
+
+    public synchronized void removeSelectedItem(String key) {
+        if (items.remove(key)) {
+            snapshot = null;
+        }
+    }
+
+    /**
+     * Replaces the selection with a single item.
+     */
+    public synchronized void addSingleFile(FileListItem item) {
+        items.clear();
+        items.add(item.getLocation());
+        snapshot = null;
+    }
+
+    public synchronized void clearSelectionList() {
+        items.clear();
+        snapshot = EMPTY;
+    }
+
+    /**
+     * @return the selected paths. The array is shared between calls until the
+     * selection changes, and must not be modified.
+     */
+    public String[] getSelectedPathsSnapshot() {
+        String[] paths = snapshot;
+        if (paths == null) {
+            synchronized (this) {
+                paths = snapshot;
+                if (paths == null) {
+                    paths = items.toArray(new String[items.size()]);
+                    snapshot = paths;
+                }
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * @return a copy of the selected paths, that the caller owns.
+     */
+    public String[] getSelectedPaths() {
+        return getSelectedPathsSnapshot().clone();
+    }
+}
@@ -0,0 +1,370 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import java.net.FileNameMap;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/*  Filter on the entries of a directory, compiled by its Builder from rules
+ *  on the name (hidden entries, globs, MIME types, regular expressions) and
+ *  on the attributes (size and last-modified time). Every rule must pass,
+ *  the patterns given to a single rule are alternatives. Directories are
+ *  only subject to the hidden rule, so that they can still be browsed.
+ *
+ *  Rules are evaluated cheapest first, whatever the order they were added
+ *  in. The hidden rule can be checked before an entry is stat'ed at all, the
+ *  other name rules once its type is known, and attribute rules last,
+ *  against the attributes the listing read in its stat of the entry. No rule
+ *  touches the filesystem itself. See ExtensionFilter, which applies it.
+ */
+public final class EntryFilter {
+    private final boolean showHidden;
+    private final NameRule[] nameRules;
+    private final long minSize, maxSize;
+    private final long modifiedAfter, modifiedBefore;
+    private final String description;
+
+    private EntryFilter(Builder builder) {
+        showHidden = builder.showHidden;
+        ArrayList<NameRule> rules = new ArrayList<>(builder.nameRules);
+        Collections.sort(rules, new Comparator<NameRule>() {
+            @Override
+            public int compare(NameRule a, NameRule b) {
+                return a.cost - b.cost;
+            }
+        });
+        nameRules = rules.toArray(new NameRule[0]);
+        minSize = builder.minSize;
+        maxSize = builder.maxSize;
+        modifiedAfter = builder.modifiedAfter;
+        modifiedBefore = builder.modifiedBefore;
+        StringBuilder text = new StringBuilder("EntryFilter[hidden=").append(showHidden);
+        for (NameRule rule : nameRules) {
+            text.append(", ").append(rule);
+        }
+        if (hasAttributeRules()) {
+            text.append(", size=").append(minSize).append("..").append(maxSize)
+                    .append(", modified=").append(modifiedAfter).append("..").append(modifiedBefore);
+        }
+        description = text.append(']').toString();
+    }
+
+    /**
+     * @return false if 'name' is rejected whatever the type and attributes of
+     * the entry, so that the entry need not be stat'ed. Applies to directories too.
+     */
+    public boolean acceptsAnyType(String name) {
+        return showHidden || name.isEmpty() || name.charAt(0) != '.';
+    }
+
+    /**
+     * @return true if the name rules accept a file named 'name'.
+     */
+    public boolean acceptsFileName(String name) {
+        if (!acceptsAnyType(name)) {
+            return false;
+        }
+        for (NameRule rule : nameRules) {
+            if (!rule.matches(name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if some rule depends on the size or the time of the files,
+     * which then have to be read before they can be accepted.
+     */
+    public boolean hasAttributeRules() {
+        return minSize > 0 || maxSize < Long.MAX_VALUE || modifiedAfter > Long.MIN_VALUE
+                || modifiedBefore < Long.MAX_VALUE;
+    }
+
+    /**
+     * @return true if the attribute rules accept a file of the given
+     * last-modified time and size.
+     */
+    public boolean acceptsAttributes(long time, long size) {
+        return size >= minSize && size <= maxSize && time > modifiedAfter && time < modifiedBefore;
+    }
+
+    /**
+     * @return a description of the rules, equal for filters made of the same
+     * rules. Part of the key of cached listings.
+     */
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    /*  A rule on the name of files. Rules of lower cost are checked first.
+     */
+    private abstract static class NameRule {
+        final int cost;
+
+        NameRule(int cost) {
+            this.cost = cost;
+        }
+
+        abstract boolean matches(String name);
+    }
+
+    /*  Shell-like patterns, '*' matching any run of characters and '?' any
+     *  single one, against the whole name, ignoring case. Patterns of the
+     *  form "*.ext" go through an ExtensionMatcher.
+     */
+    private static class GlobRule extends NameRule {
+        private final String[] patterns;
+        private final ExtensionMatcher suffixes;
+        private final char[][] globs;
+
+        GlobRule(String[] patterns) {
+            super(1);
+            this.patterns = patterns.clone();
+            ArrayList<String> extensions = new ArrayList<>();
+            ArrayList<char[]> others = new ArrayList<>();
+            for (String pattern : patterns) {
+                if (pattern.startsWith("*") && pattern.indexOf('*', 1) < 0 && pattern.indexOf('?') < 0) {
+                    extensions.add(pattern.substring(1));
+                } else {
+                    others.add(pattern.toLowerCase(Locale.ROOT).toCharArray());
+                }
+            }
+            suffixes = extensions.isEmpty() ? null : new ExtensionMatcher(extensions.toArray(new String[0]));
+            globs = others.toArray(new char[0][]);
+        }
+
+        @Override
+        boolean matches(String name) {
+            if (suffixes != null && suffixes.matches(name)) {
+                return true;
+            }
+            for (char[] glob : globs) {
+                if (matchesGlob(glob, name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /*  Greedy matching, backtracking to the last '*' only. Linear in
+         *  practice, and allocates nothing.
+         */
+        private static boolean matchesGlob(char[] glob, String name) {
+            int g = 0, n = 0;
+            int star = -1, resume = 0;
+            while (n < name.length()) {
+                if (g < glob.length && (glob[g] == '?' || glob[g] == fold(name.charAt(n)))) {
+                    g++;
+                    n++;
+                } else if (g < glob.length && glob[g] == '*') {
+                    star = g++;
+                    resume = n;
+                } else if (star >= 0) {
+                    g = star + 1;
+                    n = ++resume;
+                } else {
+                    return false;
+                }
+            }
+            while (g < glob.length && glob[g] == '*') {
+                g++;
+            }
+            return g == glob.length;
+        }
+
+        private static char fold(char c) {
+            if (c < 0x80) {
+                return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+            }
+            return Character.toLowerCase(c);
+        }
+
+        @Override
+        public String toString() {
+            return "glob=" + Arrays.toString(patterns);
+        }
+    }
+
+    /*  MIME types guessed from the extension of the name, either exact, eg.
+     *  "application/pdf", or whole families, eg. "image/*".
+     */
+    private static class MimeTypeRule extends NameRule {
+        private final String[] types;
+        private final String[] families;
+
+        MimeTypeRule(String[] mimeTypes) {
+            super(2);
+            ArrayList<String> exact = new ArrayList<>();
+            ArrayList<String> prefixes = new ArrayList<>();
+            for (String mimeType : mimeTypes) {
+                String folded = mimeType.toLowerCase(Locale.ROOT);
+                if (folded.endsWith("/*")) {
+                    prefixes.add(folded.substring(0, folded.length() - 1));
+                } else {
+                    exact.add(folded);
+                }
+            }
+            types = exact.toArray(new String[0]);
+            families = prefixes.toArray(new String[0]);
+        }
+
+        @Override
+        boolean matches(String name) {
+            //On Android the map is backed by the MIME table of the platform.
+            FileNameMap map = URLConnection.getFileNameMap();
+            String mimeType = map.getContentTypeFor(name.toLowerCase(Locale.ROOT));
+            if (mimeType == null) {
+                return false;
+            }
+            for (String family : families) {
+                if (mimeType.startsWith(family)) {
+                    return true;
+                }
+            }
+            for (String type : types) {
+                if (mimeType.equals(type)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "mime=" + Arrays.toString(types) + Arrays.toString(families);
+        }
+    }
+
+    /*  Regular expressions matched against the whole name. The most costly
+     *  rule: each match allocates a Matcher.
+     */
+    private static class RegexRule extends NameRule {
+        private final Pattern[] patterns;
+
+        RegexRule(String[] regexes) {
+            super(3);
+            patterns = new Pattern[regexes.length];
+            for (int i = 0; i < regexes.length; i++) {
+                patterns[i] = Pattern.compile(regexes[i]);
+            }
+        }
+
+        @Override
+        boolean matches(String name) {
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(name).matches()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return "regex=" + Arrays.toString(patterns);
+        }
+    }
+
+    /**
+     * Builds an EntryFilter. Every rule added must pass; adding the same kind
+     * of rule twice requires both to pass.
+     */
+    public static class Builder {
+        private boolean showHidden = true;
+        private final List<NameRule> nameRules = new ArrayList<>();
+        private long minSize = 0, maxSize = Long.MAX_VALUE;
+        private long modifiedAfter = Long.MIN_VALUE, modifiedBefore = Long.MAX_VALUE;
+
+        /**
+         * @param show False to leave out the files and directories whose name starts with a dot.
+         */
+        public Builder showHidden(boolean show) {
+            showHidden = show;
+            return this;
+        }
+
+        /**
+         * Accepts the files whose whole name matches one of 'patterns', eg.
+         * "*.jpg" or "IMG_????.*", ignoring case.
+         */
+        public Builder glob(String... patterns) {
+            nameRules.add(new GlobRule(patterns));
+            return this;
+        }
+
+        /**
+         * Accepts the files whose MIME type, guessed from their extension, is
+         * one of 'mimeTypes', eg. "application/pdf", or in one of the families,
+         * eg. "image/*".
+         */
+        public Builder mimeType(String... mimeTypes) {
+            nameRules.add(new MimeTypeRule(mimeTypes));
+            return this;
+        }
+
+        /**
+         * Accepts the files whose whole name matches one of 'regexes'.
+         *
+         * @throws java.util.regex.PatternSyntaxException if a regex is invalid.
+         */
+        public Builder regex(String... regexes) {
+            nameRules.add(new RegexRule(regexes));
+            return this;
+        }
+
+        /**
+         * Accepts the files whose size in bytes lies in [min, max].
+         */
+        public Builder sizeBetween(long min, long max) {
+            if (min > max) {
+                throw new IllegalArgumentException("min > max");
+            }
+            minSize = Math.max(minSize, min);
+            maxSize = Math.min(maxSize, max);
+            return this;
+        }
+
+        /**
+         * Accepts the files modified after 'time', in milliseconds since the epoch.
+         */
+        public Builder modifiedAfter(long time) {
+            modifiedAfter = Math.max(modifiedAfter, time);
+            return this;
+        }
+
+        /**
+         * Accepts the files modified before 'time', in milliseconds since the epoch.
+         */
+        public Builder modifiedBefore(long time) {
+            modifiedBefore = Math.min(modifiedBefore, time);
+            return this;
+        }
+
+        public EntryFilter build() {
+            return new EntryFilter(this);
+        }
+    }
+}
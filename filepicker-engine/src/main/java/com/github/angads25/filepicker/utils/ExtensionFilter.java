@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+
+import java.io.File;
+import java.io.FileFilter;
+
+/**
+ * <p>
+ * Created by Angad Singh on 11-07-2016.
+ * </p>
+ */
+
+/*  Class to filter the list of files. Applies the extensions and the
+ *  EntryFilter of the properties, in stages so that listings can skip the
+ *  stat of an entry the name alone rules out: mayAccept() before the stat,
+ *  accept() once the type is known, acceptsAttributes() with the attributes.
+ */
+public class ExtensionFilter implements FileFilter {
+    private final ExtensionMatcher matcher;
+    private final EntryFilter rules;
+    private DialogProperties properties;
+
+    public ExtensionFilter(DialogProperties properties) {
+        if (properties.extensions != null) {
+            this.matcher = new ExtensionMatcher(properties.extensions);
+        } else {
+            this.matcher = new ExtensionMatcher(new String[]{""});
+        }
+        this.rules = properties.entryFilter;
+        this.properties = properties;
+    }
+
+    /**
+     * Function to filter files based on defined rules. The name is checked
+     * first, the file is only stat'ed when the name alone can't decide.
+     */
+    @Override
+    public boolean accept(File file) {
+        if (rules != null) {
+            String name = file.getName();
+            if (!mayAccept(name)) {
+                return false;
+            }
+            boolean directory = file.isDirectory();
+            return accept(name, directory, directory && file.canRead())
+                    && acceptsAttributes(directory, file.lastModified(), file.length());
+        }
+        if (properties.selection_type == DialogConfigs.DIR_SELECT) {   /*  If the selection type is Directory type, ie.
+         *  Only directory has to be selected from the list, then all files are
+         *  ignored.
+         */
+            return file.isDirectory() && file.canRead();
+        } else if (matcher.matches(file.getName())) {   /*  Name of the file ends with the extension. Added if it
+         *  does, whether it is a file or a directory.
+         */
+            return true;
+        }
+        //All directories are added in the least that can be read by the Application
+        return file.isDirectory() && file.canRead();
+    }
+
+    /**
+     * Same as {@link #accept(File)}, for a file whose attributes have already
+     * been read. Does not touch the filesystem.
+     *
+     * @param name      Name of the file.
+     * @param directory Whether the file is a directory.
+     * @param readable  Whether the file can be read by the Application.
+     */
+    public boolean accept(String name, boolean directory, boolean readable) {
+        if (directory && readable) {
+            return rules == null || rules.acceptsAnyType(name);
+        } else if (properties.selection_type == DialogConfigs.DIR_SELECT) {
+            return false;
+        }
+        return matcher.matches(name) && (rules == null || rules.acceptsFileName(name));
+    }
+
+    /**
+     * @return false if 'name' is rejected whatever the type and attributes of
+     * the entry, eg. a hidden file. Such entries need not be stat'ed at all.
+     */
+    public boolean mayAccept(String name) {
+        return rules == null || rules.acceptsAnyType(name);
+    }
+
+    /**
+     * @return true if files can only be accepted once their time and size
+     * are known, see {@link #acceptsAttributes}.
+     */
+    public boolean needsAttributes() {
+        return rules != null && rules.hasAttributeRules();
+    }
+
+    /**
+     * Last check of an entry accepted by {@link #accept(String, boolean, boolean)},
+     * against the attributes already read. Directories always pass.
+     */
+    public boolean acceptsAttributes(boolean directory, long time, long size) {
+        return directory || rules == null || rules.acceptsAttributes(time, size);
+    }
+
+    /**
+     * @return true if 'name' ends with one of the extensions. Does not touch the filesystem.
+     */
+    public boolean acceptsName(String name) {
+        return matcher.matches(name);
+    }
+}
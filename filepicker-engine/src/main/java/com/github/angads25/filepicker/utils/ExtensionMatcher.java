@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/*  Case-insensitive suffix matcher, compiled from a set of extensions into a
+ *  trie of their reversed characters. A name is matched by walking it from
+ *  its last character, so the cost depends on the length of the longest
+ *  matching extension rather than on the number of extensions, and nothing
+ *  is allocated.
+ */
+public class ExtensionMatcher {
+    private final Node root = new Node();
+    private final boolean matchesAll;
+
+    /**
+     * @param extensions Suffixes to match, eg. {"jpg", ".png"}. An empty
+     *                   suffix matches every name. Case is ignored.
+     */
+    public ExtensionMatcher(String[] extensions) {
+        boolean all = false;
+        for (String extension : extensions) {
+            if (extension == null) {
+                continue;
+            }
+            if (extension.length() == 0) {
+                all = true;
+                continue;
+            }
+            //Folded with ROOT, the default Locale would fold 'I' to a dotless 'i' in Turkish.
+            String folded = extension.toLowerCase(Locale.ROOT);
+            Node node = root;
+            for (int i = folded.length() - 1; i >= 0; i--) {
+                node = node.getOrAdd(folded.charAt(i));
+            }
+            node.terminal = true;
+        }
+        matchesAll = all;
+    }
+
+    /**
+     * @return true if 'name' ends with one of the extensions, ignoring case.
+     */
+    public boolean matches(String name) {
+        if (matchesAll) {
+            return true;
+        }
+        Node node = root;
+        for (int i = name.length() - 1; i >= 0; i--) {
+            node = node.get(fold(name.charAt(i)));
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static char fold(char c) {
+        if (c < 0x80) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(c);
+    }
+
+    private static class Node {
+        //Labels are kept sorted, children[i] is reached through labels[i].
+        char[] labels = new char[0];
+        Node[] children = new Node[0];
+        boolean terminal;
+
+        Node get(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            return index >= 0 ? children[index] : null;
+        }
+
+        Node getOrAdd(char c) {
+            int index = Arrays.binarySearch(labels, c);
+            if (index >= 0) {
+                return children[index];
+            }
+            int insert = -index - 1;
+            char[] newLabels = new char[labels.length + 1];
+            Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insert);
+            System.arraycopy(children, 0, newChildren, 0, insert);
+            System.arraycopy(labels, insert, newLabels, insert + 1, labels.length - insert);
+            System.arraycopy(children, insert, newChildren, insert + 1, children.length - insert);
+            Node child = new Node();
+            newLabels[insert] = c;
+            newChildren[insert] = child;
+            labels = newLabels;
+            children = newChildren;
+            return child;
+        }
+    }
+}
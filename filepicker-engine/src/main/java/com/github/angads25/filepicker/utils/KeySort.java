@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RecursiveAction;
+
+/*  Sorts listings by date or size without a comparator. The order of an entry
+ *  is packed into one long: its group (parent entry, directory, file) in the
+ *  top bits and its time or size below, already flipped for the sort order.
+ *  The keys are then merge sorted along with an int[] permutation, so each
+ *  comparison is a compare of two longs. Big listings are sorted in parallel
+ *  on the WalkerPool.
+ *
+ *  The sort is stable and gives the same order as the comparators of
+ *  ListingUtils.createFileListItemsComparator(). Directories of equal size,
+ *  which those sort by name, are put in order afterwards.
+ */
+final class KeySort {
+    //Below this, sorting with the comparator is as fast.
+    static final int MIN_SIZE = 64;
+    private static final int PARALLEL_THRESHOLD = 1 << 15;
+    private static final int INSERTION_THRESHOLD = 24;
+
+    private static final int VALUE_BITS = 61;
+    private static final long MAX_VALUE = (1L << VALUE_BITS) - 1;
+    private static final long GROUP_PARENT = 0;
+    private static final long GROUP_DIRECTORY = 1L << VALUE_BITS;
+    private static final long GROUP_FILE = 2L << VALUE_BITS;
+
+    private static final Comparator<FileListItem> BY_NAME = new Comparator<FileListItem>() {
+        @Override
+        public int compare(FileListItem item1, FileListItem item2) {
+            return item1.getSortKey().compareTo(item2.getSortKey());
+        }
+    };
+
+    private KeySort() {
+    }
+
+    /**
+     * @return true if listings sorted with 'sortBy' can be sorted here.
+     */
+    static boolean supports(int sortBy) {
+        return sortBy == DialogConfigs.SORT_BY_LAST_MODIFIED || sortBy == DialogConfigs.SORT_BY_SIZE;
+    }
+
+    /**
+     * Sorts 'entries' in place, as the comparator for 'sortBy' and 'reversed'
+     * would.
+     */
+    static void sort(List<FileListItem> entries, int sortBy, boolean reversed) {
+        int count = entries.size();
+        FileListItem[] items = entries.toArray(new FileListItem[count]);
+        long[] keys = new long[count];
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            FileListItem item = items[i];
+            keys[i] = key(item.isParentEntry(), item.isDirectory(), item.getTime(), item.getSize(),
+                    item.getContentSize(), sortBy, reversed);
+            order[i] = i;
+        }
+        sortKeys(keys, order);
+        for (int i = 0; i < count; i++) {
+            entries.set(i, items[order[i]]);
+        }
+        if (sortBy == DialogConfigs.SORT_BY_SIZE) {
+            sortTiesByName(entries, keys);
+        }
+    }
+
+    /**
+     * Sorts 'keys' in place, stable, along with 'order' whose values move
+     * with their key. In parallel for big arrays.
+     */
+    static void sortKeys(long[] keys, int[] order) {
+        int count = keys.length;
+        long[] auxKeys = keys.clone();
+        int[] auxOrder = order.clone();
+        if (count >= PARALLEL_THRESHOLD && WalkerPool.AVAILABLE) {
+            sortParallel(auxKeys, auxOrder, keys, order, count);
+        } else {
+            mergeSort(auxKeys, auxOrder, keys, order, 0, count);
+        }
+    }
+
+    /**
+     * @return true if 'key' is the key of a directory.
+     */
+    static boolean isDirectoryKey(long key) {
+        return (key & ~MAX_VALUE) == GROUP_DIRECTORY;
+    }
+
+    @SuppressWarnings("NewApi")
+    private static void sortParallel(long[] srcKeys, int[] srcOrder, long[] keys, int[] order, int count) {
+        WalkerPool.get().invoke(new SortTask(srcKeys, srcOrder, keys, order, 0, count));
+    }
+
+    /**
+     * @return the order of an entry as an ascending key. Files are compared by
+     * time or length, directories by time or content size, unknown sizes last.
+     */
+    static long key(boolean parentEntry, boolean directory, long time, long size, long contentSize,
+                    int sortBy, boolean reversed) {
+        if (parentEntry) {
+            return GROUP_PARENT;
+        }
+        if (!directory) {
+            long value = sortBy == DialogConfigs.SORT_BY_SIZE ? size : time;
+            return GROUP_FILE | descending(clamp(value, MAX_VALUE), reversed, MAX_VALUE);
+        }
+        if (sortBy == DialogConfigs.SORT_BY_LAST_MODIFIED) {
+            return GROUP_DIRECTORY | descending(clamp(time, MAX_VALUE), reversed, MAX_VALUE);
+        }
+        size = contentSize;
+        if (size < 0) {
+            return GROUP_DIRECTORY | MAX_VALUE;
+        }
+        //Known sizes stay below MAX_VALUE in both orders.
+        return GROUP_DIRECTORY | descending(clamp(size, MAX_VALUE - 1), reversed, MAX_VALUE - 1);
+    }
+
+    private static long clamp(long value, long max) {
+        return value < 0 ? 0 : Math.min(value, max);
+    }
+
+    private static long descending(long value, boolean reversed, long max) {
+        return reversed ? value : max - value;
+    }
+
+    /*  Directories with equal keys are sorted by name, in both orders.
+     */
+    private static void sortTiesByName(List<FileListItem> entries, long[] keys) {
+        int count = keys.length;
+        int start = 0;
+        while (start < count) {
+            int end = start + 1;
+            while (end < count && keys[end] == keys[start]) {
+                end++;
+            }
+            if (end - start > 1 && isDirectoryKey(keys[start])) {
+                Collections.sort(entries.subList(start, end), BY_NAME);
+            }
+            start = end;
+        }
+    }
+
+    /*  Sorts [from, to) into 'keys' and 'order', which on entry hold the same
+     *  values as 'srcKeys' and 'srcOrder' in that range. The source arrays are
+     *  used as scratch space, each level swapping the roles of the two pairs.
+     */
+    private static void mergeSort(long[] srcKeys, int[] srcOrder, long[] keys, int[] order, int from, int to) {
+        if (to - from <= INSERTION_THRESHOLD) {
+            insertionSort(keys, order, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(keys, order, srcKeys, srcOrder, from, mid);
+        mergeSort(keys, order, srcKeys, srcOrder, mid, to);
+        merge(srcKeys, srcOrder, keys, order, from, mid, to);
+    }
+
+    private static void insertionSort(long[] keys, int[] order, int from, int to) {
+        for (int i = from + 1; i < to; i++) {
+            long key = keys[i];
+            int position = order[i];
+            int j = i - 1;
+            while (j >= from && keys[j] > key) {
+                keys[j + 1] = keys[j];
+                order[j + 1] = order[j];
+                j--;
+            }
+            keys[j + 1] = key;
+            order[j + 1] = position;
+        }
+    }
+
+    /*  Merges the sorted halves [from, mid) and [mid, to) of the source into
+     *  the destination. Ties are taken from the first half, to keep the sort
+     *  stable.
+     */
+    private static void merge(long[] srcKeys, int[] srcOrder, long[] keys, int[] order, int from, int mid, int to) {
+        if (srcKeys[mid - 1] <= srcKeys[mid]) {
+            System.arraycopy(srcKeys, from, keys, from, to - from);
+            System.arraycopy(srcOrder, from, order, from, to - from);
+            return;
+        }
+        int i = from, j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && srcKeys[i] <= srcKeys[j])) {
+                keys[k] = srcKeys[i];
+                order[k] = srcOrder[i++];
+            } else {
+                keys[k] = srcKeys[j];
+                order[k] = srcOrder[j++];
+            }
+        }
+    }
+
+    /*  Same as mergeSort, the two halves of big ranges being sorted in
+     *  parallel.
+     */
+    //Never serialized, ForkJoinTask only happens to be Serializable.
+    @SuppressWarnings({"NewApi", "serial"})
+    private static class SortTask extends RecursiveAction {
+        private final long[] srcKeys;
+        private final int[] srcOrder;
+        private final long[] keys;
+        private final int[] order;
+        private final int from;
+        private final int to;
+
+        SortTask(long[] srcKeys, int[] srcOrder, long[] keys, int[] order, int from, int to) {
+            this.srcKeys = srcKeys;
+            this.srcOrder = srcOrder;
+            this.keys = keys;
+            this.order = order;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD / 2) {
+                mergeSort(srcKeys, srcOrder, keys, order, from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SortTask(keys, order, srcKeys, srcOrder, from, mid),
+                    new SortTask(keys, order, srcKeys, srcOrder, mid, to));
+            merge(srcKeys, srcOrder, keys, order, from, mid, to);
+        }
+    }
+}
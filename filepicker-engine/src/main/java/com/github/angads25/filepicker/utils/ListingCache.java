@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*  Bounded LRU cache of directory listings. Listings are keyed by the path of
+ *  the directory and by the filter/sort configuration they were produced with,
+ *  and are weighted by their number of entries. A cached listing is only
+ *  returned while the last-modified time of its directory is unchanged, which
+ *  catches files being added, removed or renamed, but not files being
+ *  rewritten in place.
+ */
+public class ListingCache {
+    public static final int DEFAULT_MAX_WEIGHT = 20000;
+
+    private static ListingCache defaultInstance;
+
+    private final LinkedHashMap<String, Entry> map;
+    private final int maxWeight;
+    private int weight;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * @param maxWeight Maximum number of entries, summed over all cached listings.
+     */
+    public ListingCache(int maxWeight) {
+        if (maxWeight <= 0) {
+            throw new IllegalArgumentException("maxWeight <= 0");
+        }
+        this.maxWeight = maxWeight;
+        //Access ordered, so that iteration starts at the least recently used listing.
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the process-wide cache used by DialogProperties by default.
+     */
+    public static synchronized ListingCache getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new ListingCache(DEFAULT_MAX_WEIGHT);
+        }
+        return defaultInstance;
+    }
+
+    /**
+     * Builds the part of the key that depends on the dialog configuration,
+     * ie. everything that changes the content or the order of a listing.
+     */
+    public static String configKey(DialogProperties properties) {
+        return properties.selection_type + ":" + properties.sortBy + ":" + properties.sortOrder + ":"
+                + Arrays.toString(properties.extensions) + ":" + properties.entryFilter;
+    }
+
+    /**
+     * Returns the cached listing of 'directory', or null if there is none or
+     * if the directory has been modified since. Costs a single stat.
+     * The returned list is shared and must not be modified.
+     */
+    public List<FileListItem> get(File directory, String config) {
+        String key = key(directory, config);
+        long lastModified = directory.lastModified();
+        synchronized (this) {
+            Entry entry = map.get(key);
+            if (entry != null && entry.lastModified == lastModified && lastModified != 0) {
+                hitCount++;
+                return entry.items;
+            }
+            if (entry != null) {
+                map.remove(key);
+                weight -= entry.weight();
+            }
+            missCount++;
+            return null;
+        }
+    }
+
+    /**
+     * @return true if a listing of 'directory' is cached and still valid.
+     * Costs a single stat, and counts neither as a hit nor as a miss.
+     */
+    public boolean contains(File directory, String config) {
+        String key = key(directory, config);
+        long lastModified = directory.lastModified();
+        synchronized (this) {
+            Entry entry = map.get(key);
+            return entry != null && entry.lastModified == lastModified && lastModified != 0;
+        }
+    }
+
+    /**
+     * Caches the listing of 'directory'.
+     *
+     * @param lastModified Last-modified time of the directory, read before it was listed.
+     * @param items        The listing. A copy is kept.
+     */
+    public void put(File directory, String config, long lastModified, List<FileListItem> items) {
+        if (lastModified == 0) {
+            //The directory could not be stat'ed, there is nothing to validate against.
+            return;
+        }
+        Entry entry = new Entry(lastModified, new ArrayList<>(items));
+        if (entry.weight() > maxWeight) {
+            return;
+        }
+        String key = key(directory, config);
+        synchronized (this) {
+            Entry previous = map.put(key, entry);
+            if (previous != null) {
+                weight -= previous.weight();
+            }
+            weight += entry.weight();
+            trimToWeight(maxWeight);
+        }
+    }
+
+    /**
+     * Drops all the listings of 'directory'.
+     */
+    public synchronized void invalidate(File directory) {
+        String prefix = directory.getAbsolutePath() + '\0';
+        Iterator<Map.Entry<String, Entry>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> next = iterator.next();
+            if (next.getKey().startsWith(prefix)) {
+                weight -= next.getValue().weight();
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        weight = 0;
+    }
+
+    private void trimToWeight(int max) {
+        Iterator<Entry> iterator = map.values().iterator();
+        while (weight > max && iterator.hasNext()) {
+            Entry eldest = iterator.next();
+            iterator.remove();
+            weight -= eldest.weight();
+            evictionCount++;
+        }
+    }
+
+    private static String key(File directory, String config) {
+        return directory.getAbsolutePath() + '\0' + config;
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of entries currently cached, summed over all listings.
+     */
+    public synchronized int getWeight() {
+        return weight;
+    }
+
+    public int getMaxWeight() {
+        return maxWeight;
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = hitCount + missCount;
+        int hitPercent = accesses != 0 ? (int) (100 * hitCount / accesses) : 0;
+        return "ListingCache[weight=" + weight + "/" + maxWeight + ", hits=" + hitCount + ", misses="
+                + missCount + ", evictions=" + evictionCount + ", hitRate=" + hitPercent + "%]";
+    }
+
+    private static class Entry {
+        final long lastModified;
+        final List<FileListItem> items;
+
+        Entry(long lastModified, List<FileListItem> items) {
+            this.lastModified = lastModified;
+            this.items = items;
+        }
+
+        int weight() {
+            return items.size() + 1;
+        }
+    }
+}
@@ -0,0 +1,874 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.controller.ListingBatchListener;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.ListingStats;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*  Listing and sorting of directory entries. Unlike Utility, this class does
+ *  not depend on the Android framework, so that it can also run, and be
+ *  measured, on a plain JVM. Utility delegates to it.
+ */
+public class ListingUtils {
+    //java.nio.file is part of Android since Oreo, and of every desktop JVM.
+    private static final boolean NIO_FILES_AVAILABLE = isNioFilesAvailable();
+
+    private static boolean isNioFilesAvailable() {
+        try {
+            Class.forName("java.nio.file.Files");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return true if java.nio.file can be used, ie. on Oreo and above.
+     */
+    public static boolean hasNioFiles() {
+        return NIO_FILES_AVAILABLE;
+    }
+
+    /**
+     * Tells whether 'file' itself is a symbolic link, so that walks of a
+     * subtree don't descend into it: a link may lead back to an ancestor, or
+     * alias a directory that is walked anyway. Before Oreo, the canonical path
+     * of the file is compared with the one of its parent, which costs more.
+     *
+     * @return true if 'file' is a symbolic link, or if its path can't be resolved.
+     */
+    @SuppressWarnings("NewApi")
+    public static boolean isSymbolicLink(File file) {
+        if (NIO_FILES_AVAILABLE) {
+            return Files.isSymbolicLink(file.toPath());
+        }
+        try {
+            File parent = file.getAbsoluteFile().getParentFile();
+            if (parent == null) {
+                return false;
+            }
+            File unresolved = new File(parent.getCanonicalFile(), file.getName());
+            return !unresolved.getCanonicalFile().equals(unresolved.getAbsoluteFile());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Prepares the list of Files and Folders inside 'inter' Directory.
+     * The list can be filtered through extensions. 'filter' reference
+     * is the FileFilter. A reference of ArrayList is passed, in case it
+     * may contain the ListItem for parent directory. Returns the List of
+     * Directories/files in the form of ArrayList.
+     *
+     * @param internalList ArrayList containing parent directory.
+     * @param inter        The present directory to look into.
+     * @param filter       Extension filter class reference, for filtering files.
+     * @return ArrayList of FileListItem containing file info of current directory.
+     */
+    public static ArrayList<FileListItem> prepareFileListEntries(ArrayList<FileListItem> internalList, File inter, ExtensionFilter filter, Comparator<FileListItem> sorter) {
+        return prepareFileListEntries(internalList, inter, filter, sorter, new ListingStats());
+    }
+
+    /**
+     * Same as above, 'stats' is filled with the number of entries read and
+     * the number of stat calls made to read their attributes.
+     */
+    public static ArrayList<FileListItem> prepareFileListEntries(final ArrayList<FileListItem> internalList, File inter, ExtensionFilter filter,
+                                                                 Comparator<FileListItem> sorter, ListingStats stats) {
+        long start = System.nanoTime();
+        //Check for each and every directory/file in 'inter' directory.
+        //Filter by extension using 'filter' reference.
+        listDirectory(inter, filter, stats, new ItemSink(inter) {
+            @Override
+            void offer(FileListItem item) {
+                //Add row to the List of directories/files
+                internalList.add(item);
+            }
+        });
+        //Sort the files and directories in alphabetical order.
+        //See compareTo method in FileListItem class.
+        long sortStart = System.nanoTime();
+        sortEntries(internalList, sorter);
+        stats.addSortTime(System.nanoTime() - sortStart);
+        stats.setListingTimeNanos(System.nanoTime() - start);
+        return internalList;
+    }
+
+    /**
+     * Bounded variant of prepareFileListEntries, for listings made
+     * speculatively: gives up on directories holding more than 'maxEntries'
+     * entries, before filtering, so that their cost stays bounded. Stops
+     * early if the calling thread is interrupted.
+     *
+     * @param inter      The directory to look into.
+     * @param filter     Extension filter class reference, for filtering files.
+     * @param sorter     Comparator used to sort the entries.
+     * @param maxEntries Maximum number of entries to read.
+     * @param stats      Receives the number of entries read and stat calls made.
+     * @return the entries of the directory, sorted, or null if it was not read to its end.
+     */
+    public static ArrayList<FileListItem> prepareBoundedFileListEntries(File inter, ExtensionFilter filter,
+                                                                        Comparator<FileListItem> sorter, int maxEntries,
+                                                                        ListingStats stats) {
+        long start = System.nanoTime();
+        final ArrayList<FileListItem> entries = new ArrayList<>();
+        boolean complete = listDirectory(inter, filter, maxEntries, stats, new ItemSink(inter) {
+            @Override
+            void offer(FileListItem item) {
+                entries.add(item);
+            }
+        });
+        if (!complete) {
+            return null;
+        }
+        long sortStart = System.nanoTime();
+        sortEntries(entries, sorter);
+        stats.addSortTime(System.nanoTime() - sortStart);
+        stats.setListingTimeNanos(System.nanoTime() - start);
+        return entries;
+    }
+
+    /**
+     * Streaming variant of prepareFileListEntries. The directory is enumerated
+     * lazily and entries are handed to 'listener' in sorted batches as soon as
+     * they are read, so that the first rows can be shown before the whole
+     * directory has been listed. The first batch is kept small to fill the
+     * first screen quickly, later batches are bigger to keep the overhead low.
+     * <p>
+     * Uses a {@link DirectoryStream} where java.nio.file is available, ie. on
+     * Oreo and above. Older platforms fall back to {@link File#list()}, which
+     * at least avoids building a File[].
+     *
+     * @param inter          The present directory to look into.
+     * @param filter         Extension filter class reference, for filtering files.
+     * @param sorter         Comparator used to sort each batch and the final list.
+     * @param firstBatchSize Number of entries in the first batch.
+     * @param batchSize      Number of entries in the following batches.
+     * @param listener       Receives the batches, on the calling thread.
+     * @param stats          Receives the number of entries read and stat calls made.
+     * @return ArrayList of all the FileListItem of the directory, sorted.
+     */
+    public static ArrayList<FileListItem> streamFileListEntries(File inter, ExtensionFilter filter, Comparator<FileListItem> sorter,
+                                                                int firstBatchSize, int batchSize, ListingBatchListener listener,
+                                                                ListingStats stats) {
+        long start = System.nanoTime();
+        BatchCollector collector = new BatchCollector(inter, sorter, firstBatchSize, batchSize, listener);
+        listDirectory(inter, filter, stats, collector);
+        collector.flush();
+        long sortStart = System.nanoTime();
+        sortEntries(collector.entries, sorter);
+        stats.addSortTime(System.nanoTime() - sortStart);
+        stats.setListingTimeNanos(System.nanoTime() - start);
+        return collector.entries;
+    }
+
+    /**
+     * Lazy variant of prepareFileListEntries: only the name and the type of
+     * the entries are read, their time and size are left pending, see
+     * {@link #readAttributes}. Java can't tell the type of an entry without a
+     * stat, so that one is still made, but the other attribute calls are
+     * saved, and files are not tested for readability.
+     *
+     * @param internalList ArrayList containing parent directory.
+     * @param inter        The present directory to look into.
+     * @param filter       Extension filter class reference, for filtering files. Must not need attributes.
+     * @param sorter       Comparator used to sort the entries. Must not depend on time or size.
+     * @param stats        Receives the number of entries read and stat calls made.
+     * @return ArrayList of FileListItem containing file info of current directory.
+     */
+    public static ArrayList<FileListItem> prepareLazyFileListEntries(ArrayList<FileListItem> internalList, File inter,
+                                                                     ExtensionFilter filter, Comparator<FileListItem> sorter,
+                                                                     ListingStats stats) {
+        long start = System.nanoTime();
+        String[] names = inter.list();
+        if (names != null) {
+            String parentPath = inter.getAbsolutePath();
+            internalList.ensureCapacity(internalList.size() + names.length);
+            for (String name : names) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                stats.addEntries(1);
+                if (!acceptsBeforeStat(filter, name, stats)) {
+                    continue;
+                }
+                File file = new File(inter, name);
+                long statStart = stats.now();
+                boolean directory = file.isDirectory();
+                long filterStart = stats.now();
+                stats.addStatCalls(1);
+                stats.addStatTime(filterStart - statStart);
+                boolean accepted = filter.accept(name, directory, true);
+                stats.addFilterTime(stats.now() - filterStart);
+                if (!accepted) {
+                    continue;
+                }
+                if (directory) {
+                    statStart = stats.now();
+                    boolean readable = file.canRead();
+                    stats.addStatCalls(1);
+                    stats.addStatTime(stats.now() - statStart);
+                    if (!readable) {
+                        continue;
+                    }
+                }
+                FileListItem item = new FileListItem();
+                item.setFilename(name);
+                item.setDirectory(directory);
+                item.setLocation(childPath(parentPath, name));
+                item.setAttributesPending(true);
+                internalList.add(item);
+            }
+        }
+        long sortStart = System.nanoTime();
+        sortEntries(internalList, sorter);
+        stats.addSortTime(System.nanoTime() - sortStart);
+        stats.setListingTimeNanos(System.nanoTime() - start);
+        return internalList;
+    }
+
+    /**
+     * Compact variant of prepareFileListEntries: the entries are kept in the
+     * columns of a {@link CompactListing} as they are read, no FileListItem
+     * is created.
+     *
+     * @param inter    The present directory to look into.
+     * @param filter   Extension filter class reference, for filtering files.
+     * @param sortBy   Sort mode, see DialogConfigs.SORT_BY_NAME and others.
+     * @param reversed True to sort in reverse order.
+     * @param stats    Receives the number of entries read and stat calls made.
+     * @return the entries of the directory, sorted as with the comparator of the same mode.
+     */
+    public static CompactListing prepareCompactListing(File inter, ExtensionFilter filter, int sortBy, boolean reversed,
+                                                       ListingStats stats) {
+        long start = System.nanoTime();
+        final CompactListing.Builder builder = new CompactListing.Builder(inter);
+        listDirectory(inter, filter, stats, new EntrySink() {
+            @Override
+            public void offer(String name, boolean directory, long time, long size) {
+                builder.add(name, directory, time, size);
+            }
+        });
+        long sortStart = System.nanoTime();
+        Tracing.beginSection("FilePicker:sort");
+        int[] order;
+        try {
+            order = sortCompact(builder, sortBy, reversed);
+        } finally {
+            Tracing.endSection();
+        }
+        CompactListing listing = builder.build(order);
+        stats.addSortTime(System.nanoTime() - sortStart);
+        stats.setListingTimeNanos(System.nanoTime() - start);
+        return listing;
+    }
+
+    /**
+     * Sorts the entries collected by 'entries', as the comparator of
+     * {@link #createFileListItemsComparator} for the same mode would. Date
+     * and size are sorted on primitive keys, names on sort keys made for the
+     * time of the sort only.
+     *
+     * @return the indices of the entries, in sorted order.
+     */
+    public static int[] sortCompact(CompactListing.Builder entries, int sortBy, boolean reversed) {
+        int count = entries.size();
+        int[] order = new int[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        if (KeySort.supports(sortBy)) {
+            long[] keys = new long[count];
+            for (int i = 0; i < count; i++) {
+                keys[i] = KeySort.key(false, entries.isDirectory(i), entries.getTime(i), entries.getSize(i),
+                        -1, sortBy, reversed);
+            }
+            KeySort.sortKeys(keys, order);
+            if (sortBy == DialogConfigs.SORT_BY_SIZE) {
+                //Content sizes are not known here, directories all tie and are sorted by name.
+                int directories = 0;
+                while (directories < count && KeySort.isDirectoryKey(keys[directories])) {
+                    directories++;
+                }
+                sortByName(entries, order, 0, directories, false);
+            }
+        } else {
+            sortByName(entries, order, 0, count, sortBy == DialogConfigs.SORT_BY_NAME && reversed);
+        }
+        return order;
+    }
+
+    /*  Stable merge sort of order[from, to), directories first, then by name.
+     */
+    private static void sortByName(CompactListing.Builder entries, int[] order, int from, int to, boolean reversed) {
+        String[] sortKeys = new String[entries.size()];
+        for (int i = from; i < to; i++) {
+            sortKeys[order[i]] = FileListItem.createSortKey(entries.getName(order[i]));
+        }
+        mergeSortByName(entries, sortKeys, reversed, order.clone(), order, from, to);
+    }
+
+    /*  Sorts [from, to) into 'order', which on entry holds the same values as
+     *  'source' in that range. Each level swaps the roles of the two arrays.
+     */
+    private static void mergeSortByName(CompactListing.Builder entries, String[] sortKeys, boolean reversed,
+                                        int[] source, int[] order, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSortByName(entries, sortKeys, reversed, order, source, from, mid);
+        mergeSortByName(entries, sortKeys, reversed, order, source, mid, to);
+        int i = from, j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && compareByName(entries, sortKeys, reversed, source[i], source[j]) <= 0)) {
+                order[k] = source[i++];
+            } else {
+                order[k] = source[j++];
+            }
+        }
+    }
+
+    private static int compareByName(CompactListing.Builder entries, String[] sortKeys, boolean reversed,
+                                     int index1, int index2) {
+        boolean directory1 = entries.isDirectory(index1);
+        if (directory1 != entries.isDirectory(index2)) {
+            return directory1 ? -1 : 1;
+        }
+        int comparison = sortKeys[index1].compareTo(sortKeys[index2]);
+        return reversed ? -comparison : comparison;
+    }
+
+    /**
+     * Reads the time and size of an entry listed lazily, with a single stat
+     * where java.nio.file is available.
+     */
+    @SuppressWarnings("NewApi")
+    public static void readAttributes(FileListItem item) {
+        if (NIO_FILES_AVAILABLE) {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(new File(item.getLocation()).toPath(),
+                        BasicFileAttributes.class);
+                item.setTime(attributes.lastModifiedTime().toMillis());
+                item.setSize(attributes.size());
+            } catch (IOException e) {
+                //Vanished meanwhile, left at zero.
+            }
+        } else {
+            File file = new File(item.getLocation());
+            item.setTime(file.lastModified());
+            item.setSize(file.length());
+        }
+        item.setAttributesPending(false);
+    }
+
+    /**
+     * Adds the entries of 'inter' accepted by 'filter' to 'entries', in
+     * directory order, unsorted. Stops early if the calling thread is interrupted.
+     *
+     * @param inter   The directory to look into.
+     * @param filter  Extension filter class reference, for filtering files.
+     * @param stats   Receives the number of entries read and stat calls made.
+     * @param entries Receives the FileListItem of the accepted entries.
+     */
+    public static void listFileListEntries(File inter, ExtensionFilter filter, ListingStats stats,
+                                           final List<FileListItem> entries) {
+        listDirectory(inter, filter, stats, new ItemSink(inter) {
+            @Override
+            void offer(FileListItem item) {
+                entries.add(item);
+            }
+        });
+    }
+
+    /**
+     * Reads the named entries of 'inter' only, eg. the ones reported changed,
+     * and adds the accepted ones to 'entries', with the same stat calls and
+     * filtering as a full listing. Entries that no longer exist are skipped.
+     *
+     * @param inter   The directory holding the entries.
+     * @param names   The names of the entries to read.
+     * @param filter  Extension filter class reference, for filtering files.
+     * @param stats   Receives the number of entries read and stat calls made.
+     * @param entries Receives the FileListItem of the accepted entries.
+     */
+    public static void listNamedEntries(File inter, Collection<String> names, ExtensionFilter filter,
+                                        ListingStats stats, final List<FileListItem> entries) {
+        EntrySink sink = new ItemSink(inter) {
+            @Override
+            void offer(FileListItem item) {
+                entries.add(item);
+            }
+        };
+        for (String name : names) {
+            stats.addEntries(1);
+            if (!acceptsBeforeStat(filter, name, stats)) {
+                continue;
+            }
+            if (NIO_FILES_AVAILABLE) {
+                offerEntry(inter.toPath().resolve(name), name, filter, stats, sink);
+            } else {
+                offerEntry(new File(inter, name), name, filter, stats, sink);
+            }
+        }
+    }
+
+    /**
+     * Reads the entries of 'inter' and hands the accepted ones to 'sink', in
+     * directory order, without making a FileListItem for them. Stops early if
+     * the calling thread is interrupted, or once the sink is cancelled.
+     *
+     * @param inter  The directory to look into.
+     * @param filter Extension filter class reference, for filtering files.
+     * @param stats  Receives the number of entries read and stat calls made.
+     * @param sink   Receives the accepted entries, on the calling thread.
+     */
+    public static void listEntries(File inter, ExtensionFilter filter, ListingStats stats, EntrySink sink) {
+        listDirectory(inter, filter, stats, sink);
+    }
+
+    /*  Reads the entries of 'inter' and hands the accepted ones to 'sink', in
+     *  directory order. Stops early if the calling thread is interrupted, or
+     *  once the sink is cancelled.
+     */
+    private static void listDirectory(File inter, ExtensionFilter filter, ListingStats stats, EntrySink sink) {
+        listDirectory(inter, filter, Integer.MAX_VALUE, stats, sink);
+    }
+
+    /*  Same as above, but gives up once more than 'maxEntries' entries have
+     *  been read. Returns false if the listing stopped early, for any reason.
+     */
+    private static boolean listDirectory(File inter, ExtensionFilter filter, int maxEntries, ListingStats stats,
+                                         EntrySink sink) {
+        if (NIO_FILES_AVAILABLE) {
+            return listWithAttributes(inter, filter, maxEntries, stats, sink);
+        }
+        String[] names = inter.list();
+        if (names == null) {
+            //Not a directory, unreadable, or a transient failure: empty, but not to be taken for the content.
+            stats.setIncomplete(true);
+            return false;
+        }
+        if (names.length > maxEntries) {
+            //Reading the names is cheap, stat'ing them is what the limit is about.
+            stats.addEntries(names.length);
+            return false;
+        }
+        for (String name : names) {
+            //Stop early if the listing has been cancelled by a newer navigation.
+            if (Thread.currentThread().isInterrupted() || sink.isCancelled()) {
+                return false;
+            }
+            stats.addEntries(1);
+            if (!acceptsBeforeStat(filter, name, stats)) {
+                continue;
+            }
+            offerEntry(new File(inter, name), name, filter, stats, sink);
+        }
+        return true;
+    }
+
+    /*  Oreo and above: all the attributes of an entry come from a single stat
+     *  through Files.readAttributes(). Accepted entries need one more call, to
+     *  skip the unreadable ones as File.canRead() does on older platforms.
+     *  A directory that can't be opened lists empty, as File.list() does, and
+     *  like an error while reading it, marks the listing incomplete in 'stats'.
+     */
+    @SuppressWarnings("NewApi")
+    private static boolean listWithAttributes(File inter, ExtensionFilter filter, int maxEntries, ListingStats stats,
+                                              EntrySink sink) {
+        DirectoryStream<Path> opened;
+        try {
+            opened = Files.newDirectoryStream(inter.toPath());
+        } catch (IOException e) {
+            e.printStackTrace();
+            stats.setIncomplete(true);
+            return false;
+        }
+        int read = 0;
+        try (DirectoryStream<Path> stream = opened) {
+            for (Path path : stream) {
+                if (Thread.currentThread().isInterrupted() || sink.isCancelled() || read++ == maxEntries) {
+                    return false;
+                }
+                stats.addEntries(1);
+                String name = path.getFileName().toString();
+                if (!acceptsBeforeStat(filter, name, stats)) {
+                    continue;
+                }
+                offerEntry(path, name, filter, stats, sink);
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            //Some entries may be missing, the listing must not be taken for the whole directory.
+            e.printStackTrace();
+            stats.setIncomplete(true);
+            return false;
+        }
+        return true;
+    }
+
+    /*  Stats a single entry the way the listings do, one attribute at a time
+     *  on older platforms, and hands it to 'sink' if 'filter' accepts it.
+     *  The name rules must have been checked already.
+     */
+    private static void offerEntry(File file, String name, ExtensionFilter filter, ListingStats stats,
+                                   EntrySink sink) {
+        //Each attribute costs a call of its own here, so each is read once only,
+        //and the name is checked before the file is tested for readability.
+        long statStart = stats.now();
+        boolean directory = file.isDirectory();
+        long filterStart = stats.now();
+        stats.addStatCalls(1);
+        stats.addStatTime(filterStart - statStart);
+        boolean accepted = filter.accept(name, directory, true);
+        stats.addFilterTime(stats.now() - filterStart);
+        if (!accepted) {
+            return;
+        }
+        //If file/directory can be read by the Application
+        statStart = stats.now();
+        boolean readable = file.canRead();
+        stats.addStatCalls(1);
+        if (!readable) {
+            stats.addStatTime(stats.now() - statStart);
+            return;
+        }
+        long time = file.lastModified();
+        long size = file.length();
+        stats.addStatCalls(2);
+        filterStart = stats.now();
+        stats.addStatTime(filterStart - statStart);
+        //Attribute rules come last, on the attributes read for the entry anyway.
+        accepted = filter.acceptsAttributes(directory, time, size);
+        stats.addFilterTime(stats.now() - filterStart);
+        if (accepted) {
+            sink.offer(name, directory, time, size);
+        }
+    }
+
+    /*  Oreo and above: same as above, with all the attributes of the entry
+     *  read by a single Files.readAttributes() call.
+     */
+    @SuppressWarnings("NewApi")
+    private static void offerEntry(Path path, String name, ExtensionFilter filter, ListingStats stats,
+                                   EntrySink sink) {
+        BasicFileAttributes attributes;
+        long statStart = stats.now();
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            //Vanished entry or dangling link, File.canRead() would have failed too.
+            return;
+        } finally {
+            stats.addStatCalls(1);
+            stats.addStatTime(stats.now() - statStart);
+        }
+        boolean directory = attributes.isDirectory();
+        long time = attributes.lastModifiedTime().toMillis();
+        long size = attributes.size();
+        long filterStart = stats.now();
+        boolean accepted = filter.accept(name, directory, true) && filter.acceptsAttributes(directory, time, size);
+        stats.addFilterTime(stats.now() - filterStart);
+        if (!accepted) {
+            return;
+        }
+        //If file/directory can be read by the Application
+        statStart = stats.now();
+        boolean readable = Files.isReadable(path);
+        stats.addStatCalls(1);
+        stats.addStatTime(stats.now() - statStart);
+        if (readable) {
+            sink.offer(name, directory, time, size);
+        }
+    }
+
+    /*  Checks the rules that depend on the name only, eg. hidden files, so that
+     *  the entries they reject are never stat'ed.
+     */
+    private static boolean acceptsBeforeStat(ExtensionFilter filter, String name, ListingStats stats) {
+        long filterStart = stats.now();
+        boolean accepted = filter.mayAccept(name);
+        stats.addFilterTime(stats.now() - filterStart);
+        return accepted;
+    }
+
+    private static String childPath(String parentPath, String name) {
+        if (parentPath.endsWith(DialogConfigs.DIRECTORY_SEPERATOR)) {
+            return parentPath + name;
+        }
+        return parentPath + DialogConfigs.DIRECTORY_SEPERATOR + name;
+    }
+
+    /**
+     * Receives the accepted entries of a directory listing, as they are read.
+     */
+    public abstract static class EntrySink {
+        public abstract void offer(String name, boolean directory, long time, long size);
+
+        /**
+         * Checked before each entry is read. Returning true stops the listing,
+         * as interrupting the calling thread does, for callers whose threads
+         * are never interrupted, eg. the workers of a pool.
+         */
+        public boolean isCancelled() {
+            return false;
+        }
+    }
+
+    /*  Receives the accepted entries as FileListItem.
+     */
+    private abstract static class ItemSink extends EntrySink {
+        private final String parentPath;
+
+        ItemSink(File inter) {
+            parentPath = inter.getAbsolutePath();
+        }
+
+        @Override
+        public void offer(String name, boolean directory, long time, long size) {
+            //Create a row item for the directory list and define properties.
+            FileListItem item = new FileListItem();
+            item.setFilename(name);
+            item.setDirectory(directory);
+            item.setLocation(childPath(parentPath, name));
+            item.setTime(time);
+            item.setSize(size);
+            offer(item);
+        }
+
+        abstract void offer(FileListItem item);
+    }
+
+    /**
+     * Merges a sorted batch into an already sorted list, in place. Runs in
+     * linear time, so that batches can be merged on the main thread.
+     *
+     * @param target List sorted with 'sorter', receives the entries.
+     * @param batch  Entries to add, sorted with 'sorter'.
+     * @param sorter Comparator both lists are sorted with.
+     */
+    public static void mergeSortedEntries(ArrayList<FileListItem> target, List<FileListItem> batch, Comparator<FileListItem> sorter) {
+        int i = target.size() - 1;
+        int j = batch.size() - 1;
+        target.ensureCapacity(target.size() + batch.size());
+        for (int n = 0; n < batch.size(); n++) {
+            target.add(null);
+        }
+        int k = target.size() - 1;
+        //Fill from the end, so that no entry is overwritten before it is moved.
+        while (j >= 0) {
+            if (i >= 0 && sorter.compare(target.get(i), batch.get(j)) > 0) {
+                target.set(k--, target.get(i--));
+            } else {
+                target.set(k--, batch.get(j--));
+            }
+        }
+    }
+
+    /*  Accumulates the entries of a streamed listing and hands them out in batches.
+     */
+    private static class BatchCollector extends ItemSink {
+        private final Comparator<FileListItem> sorter;
+        private final int batchSize;
+        private final ListingBatchListener listener;
+        private final ArrayList<FileListItem> entries = new ArrayList<>();
+        private ArrayList<FileListItem> batch;
+        private int limit;
+
+        BatchCollector(File inter, Comparator<FileListItem> sorter, int firstBatchSize,
+                       int batchSize, ListingBatchListener listener) {
+            super(inter);
+            this.sorter = sorter;
+            this.batchSize = batchSize;
+            this.listener = listener;
+            this.limit = firstBatchSize;
+            this.batch = new ArrayList<>(firstBatchSize);
+        }
+
+        @Override
+        void offer(FileListItem item) {
+            entries.add(item);
+            batch.add(item);
+            if (batch.size() >= limit) {
+                flush();
+                limit = batchSize;
+            }
+        }
+
+        void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            sortEntries(batch, sorter);
+            listener.onBatchListed(batch);
+            batch = new ArrayList<>(batchSize);
+        }
+    }
+
+    public static Comparator<FileListItem> createFileListItemsComparator(DialogProperties properties) {
+        final Comparator<FileListItem> comparator;
+        final boolean reversed = properties.sortOrder == DialogConfigs.SORT_ORDER_REVERSE;
+
+        switch (properties.sortBy) {
+            case DialogConfigs.SORT_BY_LAST_MODIFIED:
+                comparator = new Comparator<FileListItem>() {
+                    @Override
+                    public int compare(FileListItem item1, FileListItem item2) {
+                        if (item2.isDirectory() && item1.isDirectory()) {
+                            if (item1.isParentEntry())
+                                return -1;
+
+                            if (item2.isParentEntry())
+                                return 1;
+
+                            return -Long.compare(item1.getTime(), item2.getTime()) * (reversed ? -1 : 1);
+                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
+                            //alphabetic order first.
+                            return -Long.compare(item1.getTime(), item2.getTime()) * (reversed ? -1 : 1);
+                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
+                            return 1;
+                        } else {   //Same as above but order of occurence is different.
+                            return -1;
+                        }
+                    }
+                };
+                break;
+            case DialogConfigs.SORT_BY_NAME:
+                comparator = new Comparator<FileListItem>() {
+                    @Override
+                    public int compare(FileListItem item1, FileListItem item2) {
+                        if (item2.isDirectory() && item1.isDirectory()) {
+                            if (item1.isParentEntry())
+                                return -1;
+
+                            if (item2.isParentEntry())
+                                return 1;
+
+                            return item1.getSortKey().compareTo(item2.getSortKey()) * (reversed ? -1 : 1);
+                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
+                            //alphabetic order first.
+                            return item1.getSortKey().compareTo(item2.getSortKey()) * (reversed ? -1 : 1);
+                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
+                            return 1;
+                        } else {   //Same as above but order of occurence is different.
+                            return -1;
+                        }
+                    }
+                };
+                break;
+            case DialogConfigs.SORT_BY_SIZE:
+                comparator = new Comparator<FileListItem>() {
+                    @Override
+                    public int compare(FileListItem item1, FileListItem item2) {
+                        if (item2.isDirectory() && item1.isDirectory()) {
+                            if (item1.isParentEntry())
+                                return -1;
+
+                            if (item2.isParentEntry())
+                                return 1;
+
+                            //Directories whose size is known come first, by size, then the others by name.
+                            long size1 = item1.getContentSize(), size2 = item2.getContentSize();
+                            if (size1 != size2) {
+                                if (size1 < 0)
+                                    return 1;
+
+                                if (size2 < 0)
+                                    return -1;
+
+                                return -Long.compare(size1, size2) * (reversed ? -1 : 1);
+                            }
+                            return item1.getSortKey().compareTo(item2.getSortKey());
+                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
+                            //alphabetic order first.
+                            return -Long.compare(item1.getSize(), item2.getSize()) * (reversed ? -1 : 1);
+                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
+                            return 1;
+                        } else {   //Same as above but order of occurence is different.
+                            return -1;
+                        }
+                    }
+                };
+                break;
+            default:
+                comparator = new Comparator<FileListItem>() {
+                    @Override
+                    public int compare(FileListItem o1, FileListItem o2) {
+                        return o1.compareTo(o2);
+                    }
+                };
+        }
+
+        return KeySort.supports(properties.sortBy) ? new KeyedComparator(comparator, properties.sortBy, reversed) : comparator;
+    }
+
+    /**
+     * Sorts 'entries' in place with 'sorter'. Big listings sorted by date or
+     * size with a comparator of {@link #createFileListItemsComparator} are
+     * sorted on primitive keys instead, with the same result. See KeySort.
+     */
+    public static void sortEntries(List<FileListItem> entries, Comparator<FileListItem> sorter) {
+        Tracing.beginSection("FilePicker:sort");
+        try {
+            if (sorter instanceof KeyedComparator && entries.size() >= KeySort.MIN_SIZE) {
+                KeyedComparator keyed = (KeyedComparator) sorter;
+                KeySort.sort(entries, keyed.sortBy, keyed.reversed);
+            } else {
+                Collections.sort(entries, sorter);
+            }
+        } finally {
+            Tracing.endSection();
+        }
+    }
+
+    /*  A comparator that KeySort can stand in for.
+     */
+    private static class KeyedComparator implements Comparator<FileListItem> {
+        private final Comparator<FileListItem> comparator;
+        private final int sortBy;
+        private final boolean reversed;
+
+        KeyedComparator(Comparator<FileListItem> comparator, int sortBy, boolean reversed) {
+            this.comparator = comparator;
+            this.sortBy = sortBy;
+            this.reversed = reversed;
+        }
+
+        @Override
+        public int compare(FileListItem item1, FileListItem item2) {
+            return comparator.compare(item1, item2);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+/*  Formats byte counts as "1.5 MB", with at most two decimals and '.' as the
+ *  decimal separator. The unit is picked from the position of the highest bit
+ *  and the value is computed with integer arithmetic, so nothing but the
+ *  resulting String is allocated. Instances are immutable and can be used
+ *  from any thread.
+ */
+public class SizeFormatter {
+    //Past petabytes, remainder * 100 in formatTo() could overflow a long.
+    private static final int MAX_UNIT = 5;
+    private static final ThreadLocal<StringBuilder> BUILDER = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(16);
+        }
+    };
+
+    private final String[] units;
+
+    /**
+     * @param units Names of the units, from bytes upwards in steps of 1024.
+     *              Units past the sixth, petabytes, are never used.
+     */
+    public SizeFormatter(String[] units) {
+        if (units.length == 0) {
+            throw new IllegalArgumentException("No units");
+        }
+        this.units = units.clone();
+    }
+
+    public String format(long bytes) {
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        formatTo(builder, bytes);
+        return builder.toString();
+    }
+
+    /**
+     * Appends the formatted size to 'out'.
+     */
+    public void formatTo(StringBuilder out, long bytes) {
+        if (bytes < 1024) {
+            out.append(bytes).append(' ').append(units[0]);
+            return;
+        }
+        //Each unit is 10 bits more than the previous one.
+        int unit = Math.min((63 - Long.numberOfLeadingZeros(bytes)) / 10, Math.min(units.length - 1, MAX_UNIT));
+        int shift = unit * 10;
+        long integer = bytes >>> shift;
+        long remainder = bytes & ((1L << shift) - 1);
+        //Hundredths, rounded half up. shift <= 50, so remainder * 100 < 2^57 can't overflow.
+        long hundredths = (remainder * 100 + (1L << (shift - 1))) >>> shift;
+        if (hundredths == 100) {
+            integer++;
+            hundredths = 0;
+        }
+        out.append(integer);
+        if (hundredths != 0) {
+            out.append('.').append((char) ('0' + hundredths / 10));
+            if (hundredths % 10 != 0) {
+                out.append((char) ('0' + hundredths % 10));
+            }
+        }
+        out.append(' ').append(units[unit]);
+    }
+}
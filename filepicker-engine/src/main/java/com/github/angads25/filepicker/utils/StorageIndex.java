@@ -0,0 +1,441 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.ListingStats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*  Persistent index of one or more storage trees. Every directory is recorded
+ *  with its last-modified time and the name, type, size and last-modified
+ *  time of its entries, stored column by column. The index is updated
+ *  incrementally: a directory whose last-modified time is unchanged is not
+ *  listed again. Like ListingCache, this misses files rewritten in place.
+ *
+ *  A directory that could not be listed completely keeps its previous
+ *  record, or an empty one, marked stale: it is listed again by the next
+ *  update(), and the subtrees holding it are not complete meanwhile.
+ *
+ *  Queries never touch the filesystem, so their results may be stale until
+ *  the next update(). Queries can run on any thread, concurrently with an
+ *  update; update(), load() and save() are serialized.
+ */
+public class StorageIndex {
+    private static final int MAGIC = 0x46504958;
+    private static final int VERSION = 1;
+    //Symbolic links are not followed, the walk never goes deeper than this either.
+    private static final int MAX_DEPTH = 64;
+    //Last-modified time of the records to list again, never matches a directory.
+    private static final long STALE = 0;
+
+    private final File indexFile;
+    private final ExtensionFilter allEntries;
+    private final ConcurrentHashMap<String, DirectoryRecord> records;
+
+    /**
+     * @param indexFile File the index is loaded from and saved to.
+     */
+    public StorageIndex(File indexFile) {
+        this.indexFile = indexFile;
+        //Default properties: every file, and every directory that can be read.
+        this.allEntries = new ExtensionFilter(new DialogProperties());
+        this.records = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Replaces the content of the index with the one saved in the index file.
+     * A missing file leaves the index empty. A file written by another
+     * version of the index is ignored.
+     */
+    public synchronized void load() throws IOException {
+        records.clear();
+        DataInputStream in;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+        } catch (FileNotFoundException e) {
+            return;
+        }
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return;
+            }
+            int directoryCount = in.readInt();
+            for (int d = 0; d < directoryCount; d++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                int count = in.readInt();
+                DirectoryRecord record = new DirectoryRecord(lastModified, count);
+                for (int i = 0; i < count; i++) {
+                    record.names[i] = in.readUTF();
+                    record.directories[i] = in.readBoolean();
+                    record.sizes[i] = in.readLong();
+                    record.times[i] = in.readLong();
+                }
+                records.put(path, record);
+            }
+        } catch (IOException e) {
+            //Truncated or corrupt, better no index than part of one.
+            records.clear();
+            throw e;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the index to the index file. The previous file is only replaced
+     * once the new one has been written completely.
+     */
+    public synchronized void save() throws IOException {
+        File temp = new File(indexFile.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(records.size());
+            for (Map.Entry<String, DirectoryRecord> entry : records.entrySet()) {
+                DirectoryRecord record = entry.getValue();
+                out.writeUTF(entry.getKey());
+                out.writeLong(record.lastModified);
+                out.writeInt(record.names.length);
+                for (int i = 0; i < record.names.length; i++) {
+                    out.writeUTF(record.names[i]);
+                    out.writeBoolean(record.directories[i]);
+                    out.writeLong(record.sizes[i]);
+                    out.writeLong(record.times[i]);
+                }
+            }
+        }
+        if (!temp.renameTo(indexFile)) {
+            throw new IOException("Cannot replace " + indexFile);
+        }
+    }
+
+    /**
+     * Brings the subtree of 'root' up to date. Only the directories whose
+     * last-modified time changed are listed again, directories that vanished
+     * are dropped. Linked directories are listed as entries, but their content
+     * is not indexed, so that no subtree is recorded twice. Stops early,
+     * without dropping anything, if the calling thread is interrupted.
+     *
+     * @return the number of directories that were listed.
+     */
+    public synchronized int update(File root) {
+        HashSet<String> visited = new HashSet<>();
+        int listed = update(root, 0, visited);
+        if (Thread.currentThread().isInterrupted()) {
+            return listed;
+        }
+        String rootPath = root.getAbsolutePath();
+        Iterator<String> paths = records.keySet().iterator();
+        while (paths.hasNext()) {
+            String path = paths.next();
+            if (isInSubtree(path, rootPath) && !visited.contains(path)) {
+                paths.remove();
+            }
+        }
+        return listed;
+    }
+
+    private int update(File directory, int depth, HashSet<String> visited) {
+        if (Thread.currentThread().isInterrupted()) {
+            return 0;
+        }
+        String path = directory.getAbsolutePath();
+        if (!visited.add(path)) {
+            return 0;
+        }
+        int listed = 0;
+        long lastModified = directory.lastModified();
+        DirectoryRecord record = records.get(path);
+        if (record == null || record.lastModified == STALE || record.lastModified != lastModified) {
+            ArrayList<FileListItem> entries = new ArrayList<>();
+            ListingStats stats = new ListingStats();
+            ListingUtils.listFileListEntries(directory, allEntries, stats, entries);
+            if (Thread.currentThread().isInterrupted()) {
+                //Partial listing, not recorded.
+                return 0;
+            }
+            if (stats.isIncomplete()) {
+                //Unreadable or failed part way, maybe transiently: the partial listing is not recorded.
+                record = record != null ? new DirectoryRecord(STALE, record) : new DirectoryRecord(STALE, 0);
+            } else {
+                record = new DirectoryRecord(lastModified, entries);
+            }
+            records.put(path, record);
+            listed++;
+        }
+        if (depth < MAX_DEPTH) {
+            //An unchanged directory may still have changed subdirectories.
+            for (int i = 0; i < record.names.length; i++) {
+                if (!record.directories[i]) {
+                    continue;
+                }
+                File subdirectory = new File(directory, record.names[i]);
+                if (!ListingUtils.isSymbolicLink(subdirectory)) {
+                    listed += update(subdirectory, depth + 1, visited);
+                }
+            }
+        }
+        return listed;
+    }
+
+    /**
+     * @return the indexed content of 'directory', filtered and sorted, or null
+     * if it is not indexed.
+     */
+    public ArrayList<FileListItem> list(File directory, ExtensionFilter filter, Comparator<FileListItem> sorter) {
+        String path = directory.getAbsolutePath();
+        DirectoryRecord record = records.get(path);
+        if (record == null) {
+            return null;
+        }
+        ArrayList<FileListItem> items = new ArrayList<>(record.names.length);
+        for (int i = 0; i < record.names.length; i++) {
+            if (record.accepts(filter, i)) {
+                items.add(record.createItem(path, i));
+            }
+        }
+        ListingUtils.sortEntries(items, sorter);
+        return items;
+    }
+
+    /**
+     * @return the indexed entries of the subtree of 'directory' whose name
+     * contains 'query', ignoring case, filtered and sorted.
+     */
+    public ArrayList<FileListItem> findByName(File directory, String query, ExtensionFilter filter,
+                                              Comparator<FileListItem> sorter) {
+        return find(directory, query, false, filter, sorter);
+    }
+
+    /**
+     * @return the indexed entries of the subtree of 'directory' whose name
+     * starts with 'prefix', ignoring case, filtered and sorted.
+     */
+    public ArrayList<FileListItem> findByPrefix(File directory, String prefix, ExtensionFilter filter,
+                                                Comparator<FileListItem> sorter) {
+        return find(directory, prefix, true, filter, sorter);
+    }
+
+    /**
+     * @return the indexed files of the subtree of 'directory' whose name ends
+     * with one of 'extensions', filtered and sorted.
+     */
+    public ArrayList<FileListItem> findByExtension(File directory, String[] extensions, ExtensionFilter filter,
+                                                   Comparator<FileListItem> sorter) {
+        ExtensionMatcher matcher = new ExtensionMatcher(extensions);
+        String rootPath = directory.getAbsolutePath();
+        ArrayList<FileListItem> items = new ArrayList<>();
+        for (Map.Entry<String, DirectoryRecord> entry : records.entrySet()) {
+            String path = entry.getKey();
+            if (!isInSubtree(path, rootPath)) {
+                continue;
+            }
+            DirectoryRecord record = entry.getValue();
+            for (int i = 0; i < record.names.length; i++) {
+                if (!record.directories[i] && matcher.matches(record.names[i]) && record.accepts(filter, i)) {
+                    items.add(record.createItem(path, i));
+                }
+            }
+        }
+        ListingUtils.sortEntries(items, sorter);
+        return items;
+    }
+
+    private ArrayList<FileListItem> find(File directory, String text, boolean prefix, ExtensionFilter filter,
+                                         Comparator<FileListItem> sorter) {
+        String rootPath = directory.getAbsolutePath();
+        ArrayList<FileListItem> items = new ArrayList<>();
+        if (text.isEmpty()) {
+            return items;
+        }
+        text = text.toLowerCase(Locale.ROOT);
+        for (Map.Entry<String, DirectoryRecord> entry : records.entrySet()) {
+            String path = entry.getKey();
+            if (!isInSubtree(path, rootPath)) {
+                continue;
+            }
+            DirectoryRecord record = entry.getValue();
+            for (int i = 0; i < record.names.length; i++) {
+                String name = record.names[i];
+                boolean matches = prefix ? name.regionMatches(true, 0, text, 0, text.length())
+                        : containsIgnoreCase(name, text);
+                if (matches && record.accepts(filter, i)) {
+                    items.add(record.createItem(path, i));
+                }
+            }
+        }
+        ListingUtils.sortEntries(items, sorter);
+        return items;
+    }
+
+    private static boolean isInSubtree(String path, String rootPath) {
+        if (!path.startsWith(rootPath)) {
+            return false;
+        }
+        return path.length() == rootPath.length() || rootPath.endsWith(DialogConfigs.DIRECTORY_SEPERATOR)
+                || path.startsWith(DialogConfigs.DIRECTORY_SEPERATOR, rootPath.length());
+    }
+
+    /*  'query' is lower case already. Cheaper than String.regionMatches(), which
+     *  folds both strings at every offset.
+     */
+    private static boolean containsIgnoreCase(String name, String query) {
+        char first = query.charAt(0);
+        int last = name.length() - query.length();
+        next:
+        for (int i = 0; i <= last; i++) {
+            char c = name.charAt(i);
+            if (c != first && Character.toLowerCase(c) != first) {
+                continue;
+            }
+            for (int j = 1; j < query.length(); j++) {
+                c = name.charAt(i + j);
+                char q = query.charAt(j);
+                if (c != q && Character.toLowerCase(c) != q) {
+                    continue next;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return true if the content of 'directory' is indexed.
+     */
+    public boolean contains(File directory) {
+        return records.containsKey(directory.getAbsolutePath());
+    }
+
+    /**
+     * @return true if the whole subtree of 'directory' is indexed, ie. if it is
+     * indexed and none of its directories failed to be listed by the last update.
+     */
+    public boolean containsSubtree(File directory) {
+        String rootPath = directory.getAbsolutePath();
+        if (!records.containsKey(rootPath)) {
+            return false;
+        }
+        for (Map.Entry<String, DirectoryRecord> entry : records.entrySet()) {
+            if (entry.getValue().lastModified == STALE && isInSubtree(entry.getKey(), rootPath)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getDirectoryCount() {
+        return records.size();
+    }
+
+    /**
+     * @return the number of entries, summed over all indexed directories.
+     */
+    public int getEntryCount() {
+        int count = 0;
+        for (DirectoryRecord record : records.values()) {
+            count += record.names.length;
+        }
+        return count;
+    }
+
+    public synchronized void clear() {
+        records.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "StorageIndex[directories=" + getDirectoryCount() + ", entries=" + getEntryCount() + "]";
+    }
+
+    /*  The entries of one directory, column by column. Never modified once
+     *  published in the map.
+     */
+    private static final class DirectoryRecord {
+        final long lastModified;
+        final String[] names;
+        final boolean[] directories;
+        final long[] sizes;
+        final long[] times;
+
+        DirectoryRecord(long lastModified, int count) {
+            this.lastModified = lastModified;
+            names = new String[count];
+            directories = new boolean[count];
+            sizes = new long[count];
+            times = new long[count];
+        }
+
+        //Same entries as 'content', which is never modified either.
+        DirectoryRecord(long lastModified, DirectoryRecord content) {
+            this.lastModified = lastModified;
+            names = content.names;
+            directories = content.directories;
+            sizes = content.sizes;
+            times = content.times;
+        }
+
+        DirectoryRecord(long lastModified, ArrayList<FileListItem> entries) {
+            this(lastModified, entries.size());
+            for (int i = 0; i < names.length; i++) {
+                FileListItem item = entries.get(i);
+                names[i] = item.getFilename();
+                directories[i] = item.isDirectory();
+                sizes[i] = item.getSize();
+                times[i] = item.getTime();
+            }
+        }
+
+        boolean accepts(ExtensionFilter filter, int i) {
+            return filter.accept(names[i], directories[i], true)
+                    && filter.acceptsAttributes(directories[i], times[i], sizes[i]);
+        }
+
+        FileListItem createItem(String parentPath, int i) {
+            FileListItem item = new FileListItem();
+            item.setFilename(names[i]);
+            item.setDirectory(directories[i]);
+            if (parentPath.endsWith(DialogConfigs.DIRECTORY_SEPERATOR)) {
+                item.setLocation(parentPath + names[i]);
+            } else {
+                item.setLocation(parentPath + DialogConfigs.DIRECTORY_SEPERATOR + names[i]);
+            }
+            item.setTime(times[i]);
+            item.setSize(sizes[i]);
+            return item;
+        }
+    }
+}
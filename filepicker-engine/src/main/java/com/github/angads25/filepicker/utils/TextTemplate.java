@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import java.util.ArrayList;
+
+/*  A format string with '%s' arguments, eg. "%1$s, last modified: %2$s",
+ *  split once into its literal parts, so that it can be filled in without
+ *  String.format() parsing it again, nor allocating anything. Only '%s',
+ *  '%n$s' and '%%' are supported. Instances are immutable and can be used
+ *  from any thread.
+ */
+public class TextTemplate {
+    //literals[i] comes before the argument args[i], the last one after all.
+    private final String[] literals;
+    private final int[] args;
+
+    /**
+     * @param pattern The format string, eg. read from resources.
+     * @throws IllegalArgumentException if it holds another conversion than '%s'.
+     */
+    public TextTemplate(String pattern) {
+        ArrayList<String> literals = new ArrayList<>();
+        ArrayList<Integer> args = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int next = 0;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i++);
+            if (c != '%') {
+                literal.append(c);
+                continue;
+            }
+            if (i < pattern.length() && pattern.charAt(i) == '%') {
+                literal.append('%');
+                i++;
+                continue;
+            }
+            int index = next++;
+            int digits = i;
+            while (digits < pattern.length() && Character.isDigit(pattern.charAt(digits))) {
+                digits++;
+            }
+            if (digits > i && digits < pattern.length() && pattern.charAt(digits) == '$') {
+                index = Integer.parseInt(pattern.substring(i, digits)) - 1;
+                i = digits + 1;
+            }
+            if (i >= pattern.length() || pattern.charAt(i) != 's' || index < 0) {
+                throw new IllegalArgumentException("Unsupported format: " + pattern);
+            }
+            i++;
+            literals.add(literal.toString());
+            literal.setLength(0);
+            args.add(index);
+        }
+        literals.add(literal.toString());
+        this.literals = literals.toArray(new String[literals.size()]);
+        this.args = new int[args.size()];
+        for (int a = 0; a < this.args.length; a++) {
+            this.args[a] = args.get(a);
+        }
+    }
+
+    /**
+     * Appends the template filled in with 'first' and 'second' to 'out'.
+     * Arguments past the second are left empty.
+     */
+    public void formatTo(StringBuilder out, CharSequence first, CharSequence second) {
+        for (int i = 0; i < args.length; i++) {
+            out.append(literals[i]);
+            CharSequence arg = args[i] == 0 ? first : args[i] == 1 ? second : null;
+            if (arg != null) {
+                out.append(arg);
+            }
+        }
+        out.append(literals[args.length]);
+    }
+}
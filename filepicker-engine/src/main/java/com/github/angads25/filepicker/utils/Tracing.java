@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.utils;
+
+import com.github.angads25.filepicker.controller.SectionTracer;
+
+/*  Marks the phases of listings, searches and sorts as named sections, so
+ *  that they show in traces such as Android systrace and Perfetto captures.
+ *  The engine doesn't depend on Android, the platform side installs its
+ *  tracer as the default, which a tracer set by the app takes precedence
+ *  over. Nothing is traced until one is set.
+ */
+public final class Tracing {
+    private static volatile SectionTracer tracer;
+    //True once a tracer, or null, has been set explicitly. Guarded by the class.
+    private static boolean tracerSet;
+
+    private Tracing() {
+    }
+
+    /**
+     * @param tracer Receives the sections of all the threads. Null to stop tracing.
+     */
+    public static synchronized void setTracer(SectionTracer tracer) {
+        Tracing.tracer = tracer;
+        tracerSet = true;
+    }
+
+    /**
+     * Installs 'tracer' unless a tracer has been set with {@link #setTracer},
+     * null included, so that the platform default never replaces the tracer
+     * of the host app.
+     *
+     * @return true if 'tracer' was installed.
+     */
+    public static synchronized boolean setDefaultTracer(SectionTracer tracer) {
+        if (tracerSet || Tracing.tracer != null) {
+            return false;
+        }
+        Tracing.tracer = tracer;
+        return true;
+    }
+
+    public static void beginSection(String name) {
+        SectionTracer tracer = Tracing.tracer;
+        if (tracer != null) {
+            tracer.beginSection(name);
+        }
+    }
+
+    public static void endSection() {
+        SectionTracer tracer = Tracing.tracer;
+        if (tracer != null) {
+            tracer.endSection();
+        }
+    }
+}
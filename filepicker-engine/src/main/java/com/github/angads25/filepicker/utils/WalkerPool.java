@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.utils;
+
+import java.util.concurrent.ForkJoinPool;
+
+/*  The work-stealing pool shared by the tree walkers of the engine and by the
+ *  parallel key sort. Created on first use. ForkJoinPool only exists from
+ *  Lollipop on, users check AVAILABLE and work on the calling thread otherwise.
+ */
+public final class WalkerPool {
+    public static final boolean AVAILABLE = isForkJoinAvailable();
+    private static ForkJoinPool pool;
+
+    private WalkerPool() {
+    }
+
+    private static boolean isForkJoinAvailable() {
+        try {
+            Class.forName("java.util.concurrent.ForkJoinPool");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @SuppressWarnings("NewApi")
+    public static synchronized ForkJoinPool get() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        }
+        return pool;
+    }
+}
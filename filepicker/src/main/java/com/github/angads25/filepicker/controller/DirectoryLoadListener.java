@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DirectoryDelta;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.FolderSize;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Interface definition for callbacks invoked on the main thread
+ * while a directory is being listed in background.
+ */
+public interface DirectoryLoadListener {
+
+    /**
+     * Called when a new directory starts loading. Any load that was still
+     * in flight has been cancelled by then.
+     *
+     * @param directory The directory being listed.
+     */
+    void onLoadStarted(File directory);
+
+    /**
+     * Called during a streaming load with the entries that arrived since the
+     * previous call. Calls are coalesced to at most one per frame.
+     *
+     * @param directory The directory being listed.
+     * @param entries   New entries, sorted. The parent entry comes with the first call.
+     */
+    void onEntriesLoaded(File directory, List<FileListItem> entries);
+
+    /**
+     * Called with the result of the latest load only. Results of stale
+     * loads are dropped and never delivered.
+     *
+     * @param directory The directory that was listed.
+     * @param entries   Sorted list of entries, parent entry included.
+     */
+    void onLoadFinished(File directory, ArrayList<FileListItem> entries);
+
+    /**
+     * Called after some entries of a loaded directory changed, see
+     * {@link DirectoryLoader#refresh}. Dropped if a newer load was started.
+     *
+     * @param directory The directory whose entries changed.
+     * @param delta     The changes to apply to the listing.
+     */
+    void onEntriesChanged(File directory, DirectoryDelta delta);
+
+    /**
+     * Called each time the sizes of some directories of a loaded listing have
+     * been computed, see {@link DirectoryLoader#computeFolderSizes}. Dropped
+     * if a newer load was started.
+     *
+     * @param directory The directory that was listed.
+     * @param sizes     Sizes of some of its subdirectories.
+     */
+    void onFolderSizesComputed(File directory, List<FolderSize> sizes);
+
+    /**
+     * Called when sorting by size, once the sizes of all the directories of a
+     * loaded listing are known, with the listing sorted again in background.
+     * Replaces the sizes not delivered yet. Dropped if a newer load, or a newer
+     * computation of the sizes, was started.
+     *
+     * @param directory The directory that was listed.
+     * @param entries   The listing, with the sizes of its directories, sorted.
+     */
+    void onFolderSizesSorted(File directory, ArrayList<FileListItem> entries);
+
+    /**
+     * Called with entries of a lazy listing whose time and size have been
+     * read, see {@link DirectoryLoader#readAttributes}. Dropped if a newer
+     * load was started.
+     *
+     * @param directory The directory that was listed.
+     * @param entries   Copies of the entries, with their attributes.
+     */
+    void onAttributesRead(File directory, List<FileListItem> entries);
+
+    /**
+     * Called with the result of the latest compact load, see
+     * {@link DirectoryLoader#loadCompact}, instead of onLoadFinished.
+     * Results of stale loads are dropped and never delivered.
+     *
+     * @param directory The directory that was listed.
+     * @param listing   Its entries, sorted, parent entry excluded.
+     */
+    void onCompactListingLoaded(File directory, CompactListing listing);
+}
@@ -0,0 +1,679 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.view.Choreographer;
+
+import com.github.angads25.filepicker.engine.FilePickerEngine;
+import com.github.angads25.filepicker.engine.SubtreeExpansion;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DirectoryDelta;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.FolderSize;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.utils.Utility;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*  Lists or searches directories on a background thread and publishes the
+ *  result on the main thread. Every call to load(), stream() or search()
+ *  supersedes the previous one: the stale load is interrupted and its result
+ *  is never delivered.
+ */
+public class DirectoryLoader {
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int FIRST_BATCH_SIZE = 48;
+    private static final int BATCH_SIZE = 512;
+    //Speculative listings made per prefetch: directories, and entries read over all of them.
+    private static final int PREFETCH_DIRECTORIES = 4;
+    private static final int PREFETCH_ENTRIES = 2000;
+    private static final long EXPANSION_PROGRESS_MS = 100;
+    //Sizes computed meanwhile are delivered together, each delivery costs a pass over the listing.
+    private static final long FOLDER_SIZES_DELIVERY_MS = 250;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadPoolExecutor prefetcher;
+    private final ThreadPoolExecutor expander;
+    private final Handler mainHandler;
+    private final AtomicInteger generation;
+    private Future<?> pending;
+    private Future<?> sizing;
+    //Main thread only. Tells the deliveries of the sizing in flight from those of superseded ones.
+    private int sizingGeneration;
+    private Future<?> prefetching;
+    private Future<?> expanding;
+    //Read by the expander thread before selecting, written under expansionLock.
+    private final Object expansionLock = new Object();
+    private SubtreeExpansion expansion;
+    private Runnable expansionProgress;
+    private volatile ListingStats lastStats;
+
+    //Streamed entries waiting for the next frame. Guarded by batchLock.
+    private final Object batchLock = new Object();
+    private ArrayList<FileListItem> pendingEntries;
+    private int pendingToken;
+    private File pendingDirectory;
+    private boolean frameScheduled;
+
+    public DirectoryLoader() {
+        executor = createExecutor("FilePicker-Loader", Process.THREAD_PRIORITY_BACKGROUND);
+        //Prefetching yields to the loader, which lists what is on screen.
+        prefetcher = createExecutor("FilePicker-Prefetch", Process.THREAD_PRIORITY_LOWEST);
+        //Expanding a subtree may take long, it must not hold up the loads meanwhile.
+        expander = createExecutor("FilePicker-Expand", Process.THREAD_PRIORITY_BACKGROUND);
+        mainHandler = new Handler(Looper.getMainLooper());
+        generation = new AtomicInteger();
+    }
+
+    private static ThreadPoolExecutor createExecutor(final String name, final int priority) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(priority);
+                        runnable.run();
+                    }
+                }, name);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Starts listing a directory in background. Must be called on the main thread.
+     *
+     * @param engine    Lists, filters and sorts the directory, through the listing cache.
+     * @param directory The directory to list.
+     * @param parent    Entry for the parent directory, placed on top of the list. May be null.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void load(FilePickerEngine engine, File directory, FileListItem parent, DirectoryLoadListener listener) {
+        load(engine, directory, parent, false, listener);
+    }
+
+    /**
+     * Starts listing a directory lazily in background: only the name and the
+     * type of the entries are read, see {@link #readAttributes}. Must be
+     * called on the main thread.
+     *
+     * @param engine    Lists, filters and sorts the directory. Must be able to list lazily.
+     * @param directory The directory to list.
+     * @param parent    Entry for the parent directory, placed on top of the list. May be null.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void loadLazily(FilePickerEngine engine, File directory, FileListItem parent, DirectoryLoadListener listener) {
+        load(engine, directory, parent, true, listener);
+    }
+
+    /**
+     * Starts listing a directory in background into a {@link CompactListing}.
+     * The result is delivered through
+     * {@link DirectoryLoadListener#onCompactListingLoaded}. Must be called on
+     * the main thread.
+     *
+     * @param engine    Lists, filters and sorts the directory.
+     * @param directory The directory to list.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void loadCompact(final FilePickerEngine engine, final File directory, final DirectoryLoadListener listener) {
+        cancel();
+        final int token = generation.get();
+        listener.onLoadStarted(directory);
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ListingStats stats = engine.createListingStats();
+                final CompactListing listing = engine.listChildrenCompact(directory, stats);
+                if (Thread.currentThread().isInterrupted() || token != generation.get()) {
+                    return;
+                }
+                lastStats = stats;
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (token == generation.get()) {
+                            pending = null;
+                            listener.onCompactListingLoaded(directory, listing);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    private void load(final FilePickerEngine engine, final File directory, final FileListItem parent,
+                      final boolean lazy, final DirectoryLoadListener listener) {
+        cancel();
+        final int token = generation.get();
+        listener.onLoadStarted(directory);
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ListingStats stats = engine.createListingStats();
+                List<FileListItem> children;
+                if (lazy) {
+                    children = engine.listChildrenLazily(directory, stats);
+                } else {
+                    previewIndexed(token, engine, directory, parent, listener);
+                    children = engine.listChildren(directory, stats);
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    //Partial listing, not published.
+                    return;
+                }
+                lastStats = stats;
+                publish(token, directory, withParent(parent, children), listener);
+            }
+        });
+    }
+
+    /**
+     * Starts streaming a directory in background. Entries are delivered in
+     * sorted batches through {@link DirectoryLoadListener#onEntriesLoaded}, at
+     * most once per frame, followed by the complete list. Must be called on
+     * the main thread.
+     *
+     * @param engine    Lists, filters and sorts the directory, through the listing cache.
+     * @param directory The directory to list.
+     * @param parent    Entry for the parent directory, delivered with the first batch. May be null.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void stream(final FilePickerEngine engine, final File directory, final FileListItem parent,
+                       final DirectoryLoadListener listener) {
+        cancel();
+        final int token = generation.get();
+        listener.onLoadStarted(directory);
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ListingStats stats = engine.createListingStats();
+                final Comparator<FileListItem> sorter = engine.getSorter();
+                if (previewIndexed(token, engine, directory, parent, listener)) {
+                    //Batches would be merged into the preview, the complete list replaces it instead.
+                    List<FileListItem> children = engine.listChildren(directory, stats);
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    lastStats = stats;
+                    publish(token, directory, withParent(parent, children), listener);
+                    return;
+                }
+                final boolean[] first = {true};
+                List<FileListItem> children = engine.streamChildren(directory, FIRST_BATCH_SIZE, BATCH_SIZE,
+                        new ListingBatchListener() {
+                            @Override
+                            public void onBatchListed(List<FileListItem> batch) {
+                                if (first[0] && parent != null) {
+                                    batch.add(0, parent);
+                                }
+                                first[0] = false;
+                                enqueueEntries(token, directory, batch, sorter, listener);
+                            }
+                        }, stats);
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                lastStats = stats;
+                publish(token, directory, withParent(parent, children), listener);
+            }
+        });
+    }
+
+    /**
+     * Starts searching the subtree of a directory in background, for the
+     * names containing 'query'. Matches are delivered as they are found
+     * through {@link DirectoryLoadListener#onEntriesLoaded}, at most once per
+     * frame, followed by the complete list. Must be called on the main thread.
+     *
+     * @param engine    Walks, filters and sorts the subtree.
+     * @param directory The directory to search from.
+     * @param query     Text to look for in the names. Not empty.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void search(final FilePickerEngine engine, final File directory, final String query,
+                       final DirectoryLoadListener listener) {
+        cancel();
+        final int token = generation.get();
+        listener.onLoadStarted(directory);
+        pending = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<FileListItem> indexed = engine.searchIndexed(directory, query);
+                if (indexed != null) {
+                    publish(token, directory, indexed, listener);
+                    return;
+                }
+                final Comparator<FileListItem> sorter = engine.getSorter();
+                //Interrupting this thread, see cancel(), stops the search.
+                ArrayList<FileListItem> matches = engine.createSearch(directory, query).run(new ListingBatchListener() {
+                    @Override
+                    public void onBatchListed(List<FileListItem> batch) {
+                        enqueueEntries(token, directory, batch, sorter, listener);
+                    }
+                });
+                publish(token, directory, matches, listener);
+            }
+        });
+    }
+
+    /**
+     * Reads the changed entries of the directory loaded last, in background,
+     * once the load in flight if any has completed. Unlike the other calls
+     * this does not supersede the load. Must be called on the main thread.
+     *
+     * @param engine    Reads and filters the entries.
+     * @param directory The directory whose entries changed.
+     * @param names     Names of the changed entries.
+     * @param listener  Receives the changes on the main thread.
+     */
+    public void refresh(final FilePickerEngine engine, final File directory, final Set<String> names,
+                        final DirectoryLoadListener listener) {
+        final int token = generation.get();
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (token != generation.get()) {
+                    return;
+                }
+                final DirectoryDelta delta = engine.readChanges(directory, names);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (token == generation.get()) {
+                            listener.onEntriesChanged(directory, delta);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Reads the time and size of entries of a lazy listing in background,
+     * once the load in flight if any has completed. Does not supersede the
+     * load. Must be called on the main thread.
+     *
+     * @param engine    Reads the attributes.
+     * @param directory The directory that was listed.
+     * @param items     Entries whose attributes are pending. Not modified.
+     * @param listener  Receives the entries read, on the main thread.
+     */
+    public void readAttributes(final FilePickerEngine engine, final File directory, List<FileListItem> items,
+                               final DirectoryLoadListener listener) {
+        final int token = generation.get();
+        final ArrayList<FileListItem> snapshot = new ArrayList<>(items);
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (token != generation.get()) {
+                    return;
+                }
+                final ArrayList<FileListItem> read = engine.readAttributes(snapshot);
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (token == generation.get()) {
+                            listener.onAttributesRead(directory, read);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Computes the size of the content of the directories of a loaded listing
+     * in background, once the load in flight if any has completed. Sizes are
+     * delivered as they are computed, at most every
+     * {@value #FOLDER_SIZES_DELIVERY_MS} ms. When sorting by size, the listing
+     * is sorted again in background once all are known, and delivered whole.
+     * Supersedes the previous computation, but not the load. Must be called
+     * on the main thread.
+     *
+     * @param engine    Walks the directories.
+     * @param directory The directory that was listed.
+     * @param entries   The listing. Not modified.
+     * @param listener  Receives the sizes on the main thread.
+     */
+    public void computeFolderSizes(final FilePickerEngine engine, final File directory,
+                                   List<FileListItem> entries, final DirectoryLoadListener listener) {
+        cancelFolderSizes();
+        final int token = generation.get();
+        final int sizingToken = sizingGeneration;
+        final ArrayList<FileListItem> snapshot = new ArrayList<>(entries);
+        sizing = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                if (token != generation.get()) {
+                    return;
+                }
+                final ArrayList<FolderSize> undelivered = new ArrayList<>();
+                final long[] lastDelivery = {System.nanoTime()};
+                engine.computeFolderSizes(snapshot, new FolderSizeListener() {
+                    @Override
+                    public void onFolderSizesComputed(List<FolderSize> sizes) {
+                        //Kept up to date here, so that it can be sorted again at the end.
+                        engine.applyFolderSizes(snapshot, sizes);
+                        undelivered.addAll(sizes);
+                        long now = System.nanoTime();
+                        if (now - lastDelivery[0] >= TimeUnit.MILLISECONDS.toNanos(FOLDER_SIZES_DELIVERY_MS)) {
+                            lastDelivery[0] = now;
+                            deliverFolderSizes(token, sizingToken, directory, undelivered, listener);
+                            undelivered.clear();
+                        }
+                    }
+                });
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (engine.sortByFolderSizes(snapshot)) {
+                    //The sizes are in the sorted listing, there is nothing else to deliver.
+                    mainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (token == generation.get() && sizingToken == sizingGeneration) {
+                                listener.onFolderSizesSorted(directory, snapshot);
+                            }
+                        }
+                    });
+                } else if (!undelivered.isEmpty()) {
+                    deliverFolderSizes(token, sizingToken, directory, undelivered, listener);
+                }
+            }
+        });
+    }
+
+    private void deliverFolderSizes(final int token, final int sizingToken, final File directory,
+                                    List<FolderSize> sizes, final DirectoryLoadListener listener) {
+        final ArrayList<FolderSize> delivered = new ArrayList<>(sizes);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (token == generation.get() && sizingToken == sizingGeneration) {
+                    listener.onFolderSizesComputed(directory, delivered);
+                }
+            }
+        });
+    }
+
+    /**
+     * Lists the first subdirectories of 'entries' into the listing cache, on
+     * a thread of lower priority than the loads, so that navigating to one of
+     * them is instant. At most {@value #PREFETCH_DIRECTORIES} directories and
+     * {@value #PREFETCH_ENTRIES} entries are read. Supersedes the previous
+     * prefetch, and is cancelled by the next load. Must be called on the main
+     * thread.
+     *
+     * @param engine  Lists the directories, into the cache of its properties.
+     * @param entries Entries in the order they are shown, from the first in sight. Not modified.
+     */
+    public void prefetch(final FilePickerEngine engine, List<FileListItem> entries) {
+        cancelPrefetch();
+        final ArrayList<File> directories = new ArrayList<>(PREFETCH_DIRECTORIES);
+        for (FileListItem item : entries) {
+            if (directories.size() == PREFETCH_DIRECTORIES) {
+                break;
+            }
+            if (item.isDirectory() && !item.isParentEntry()) {
+                directories.add(new File(item.getLocation()));
+            }
+        }
+        if (directories.isEmpty()) {
+            return;
+        }
+        prefetching = prefetcher.submit(new Runnable() {
+            @Override
+            public void run() {
+                int budget = PREFETCH_ENTRIES;
+                for (File directory : directories) {
+                    if (budget <= 0 || Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    budget -= engine.prefetchChildren(directory, budget);
+                }
+            }
+        });
+    }
+
+    /**
+     * Selects every file of the subtree of 'directory' accepted by the filter
+     * of the engine, walking it in background on a thread of its own. The
+     * running count and size of the files found are reported every
+     * {@value #EXPANSION_PROGRESS_MS} ms. The files are only selected once the
+     * whole subtree has been walked, a cancelled expansion selects nothing.
+     * Supersedes the previous expansion, but is not cancelled by loads. Must
+     * be called on the main thread.
+     *
+     * @param engine    Walks the subtree and holds the selection.
+     * @param directory The directory whose files are selected.
+     * @param listener  Receives the progress and the result on the main thread.
+     */
+    public void expand(final FilePickerEngine engine, final File directory, final SelectionExpansionListener listener) {
+        cancelExpansion();
+        final SubtreeExpansion expansion = engine.createExpansion(directory);
+        synchronized (expansionLock) {
+            this.expansion = expansion;
+        }
+        expansionProgress = new Runnable() {
+            @Override
+            public void run() {
+                listener.onExpansionProgress(directory, expansion.getFileCount(), expansion.getTotalSize());
+                mainHandler.postDelayed(this, EXPANSION_PROGRESS_MS);
+            }
+        };
+        mainHandler.postDelayed(expansionProgress, EXPANSION_PROGRESS_MS);
+        expanding = expander.submit(new Runnable() {
+            @Override
+            public void run() {
+                ArrayList<String> paths = expansion.run();
+                //Adding tens of thousands of paths would take frames on the main thread.
+                //The lock keeps a cancel, or a dismiss clearing the selection, from
+                //landing between the check and the selection.
+                synchronized (expansionLock) {
+                    if (DirectoryLoader.this.expansion != expansion || !expansion.complete()) {
+                        return;
+                    }
+                    engine.selectPaths(paths);
+                }
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (DirectoryLoader.this.expansion == expansion) {
+                            stopExpansionProgress();
+                            listener.onExpansionFinished(directory, expansion.getFileCount(), expansion.getTotalSize());
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Cancels the expansion in flight, if any. Its files are not selected,
+     * unless they were before the call: once it returns, no file of the
+     * expansion gets selected anymore. Must be called on the main thread.
+     */
+    public void cancelExpansion() {
+        synchronized (expansionLock) {
+            if (expansion != null) {
+                expansion.cancel();
+                expansion = null;
+            }
+        }
+        if (expanding != null) {
+            expanding.cancel(true);
+            expanding = null;
+        }
+        stopExpansionProgress();
+    }
+
+    private void stopExpansionProgress() {
+        if (expansionProgress != null) {
+            mainHandler.removeCallbacks(expansionProgress);
+            expansionProgress = null;
+        }
+        expanding = null;
+    }
+
+    /**
+     * @return the counters of the last listing that completed, or null if none did yet.
+     */
+    public ListingStats getLastListingStats() {
+        return lastStats;
+    }
+
+    /*  Called on the loader thread. Delivers the indexed content of 'directory',
+     *  if any, so that it can be shown while the directory is being listed.
+     */
+    private boolean previewIndexed(int token, FilePickerEngine engine, File directory, FileListItem parent,
+                                   DirectoryLoadListener listener) {
+        List<FileListItem> indexed = engine.listIndexed(directory);
+        if (indexed == null) {
+            return false;
+        }
+        enqueueEntries(token, directory, withParent(parent, indexed), engine.getSorter(), listener);
+        return true;
+    }
+
+    private static ArrayList<FileListItem> withParent(FileListItem parent, List<FileListItem> children) {
+        ArrayList<FileListItem> entries = new ArrayList<>(children.size() + 1);
+        if (parent != null) {
+            entries.add(parent);
+        }
+        entries.addAll(children);
+        return entries;
+    }
+
+    /*  Called on the loader thread. Posts the complete listing to the main
+     *  thread, where it is delivered unless a newer load has been started.
+     */
+    private void publish(final int token, final File directory, final ArrayList<FileListItem> result,
+                         final DirectoryLoadListener listener) {
+        if (Thread.currentThread().isInterrupted() || token != generation.get()) {
+            return;
+        }
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                //A newer load may have been started while this one was queued.
+                if (token == generation.get()) {
+                    //The complete list supersedes the batches still waiting for a frame.
+                    synchronized (batchLock) {
+                        pendingEntries = null;
+                    }
+                    pending = null;
+                    listener.onLoadFinished(directory, result);
+                }
+            }
+        });
+    }
+
+    /*  Called on the loader thread. Merges the batch into the entries waiting
+     *  for the next frame, and schedules a frame callback if none is pending.
+     */
+    private void enqueueEntries(int token, File directory, List<FileListItem> batch,
+                                final Comparator<FileListItem> sorter, final DirectoryLoadListener listener) {
+        boolean schedule;
+        synchronized (batchLock) {
+            if (pendingEntries == null || pendingToken != token) {
+                pendingEntries = new ArrayList<>(batch.size());
+                pendingToken = token;
+                pendingDirectory = directory;
+            }
+            Utility.mergeSortedEntries(pendingEntries, batch, sorter);
+            schedule = !frameScheduled;
+            frameScheduled = true;
+        }
+        if (schedule) {
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                        @Override
+                        public void doFrame(long frameTimeNanos) {
+                            ArrayList<FileListItem> entries;
+                            File directory;
+                            int token;
+                            synchronized (batchLock) {
+                                entries = pendingEntries;
+                                directory = pendingDirectory;
+                                token = pendingToken;
+                                pendingEntries = null;
+                                frameScheduled = false;
+                            }
+                            if (entries != null && token == generation.get()) {
+                                listener.onEntriesLoaded(directory, entries);
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    }
+
+    /**
+     * Cancels the load in flight, if any. Its result will not be delivered.
+     * The prefetch in flight is cancelled too.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        cancelFolderSizes();
+        cancelPrefetch();
+    }
+
+    private void cancelFolderSizes() {
+        sizingGeneration++;
+        if (sizing != null) {
+            sizing.cancel(true);
+            sizing = null;
+        }
+    }
+
+    private void cancelPrefetch() {
+        if (prefetching != null) {
+            prefetching.cancel(true);
+            prefetching = null;
+        }
+    }
+
+    public boolean isLoading() {
+        return pending != null;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import android.os.FileObserver;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Set;
+
+/*  Watches a directory with a FileObserver, and reports its changes on the
+ *  main thread. Changes are coalesced: they are reported once the directory
+ *  has been quiet for the quiet period, each change pushing the report back,
+ *  so that a burst of writes, eg. from the camera, is reported in a few calls
+ *  only. A steady stream of changes is still reported every 4 quiet periods.
+ */
+public class DirectoryObserver extends FileObserver {
+    public static final long DEFAULT_QUIET_PERIOD_MS = 250;
+    //Longest a change waits for the directory to be quiet, in quiet periods.
+    private static final int MAX_LATENCY_PERIODS = 4;
+    private static final int EVENTS = CREATE | DELETE | MOVED_FROM | MOVED_TO | CLOSE_WRITE
+            | DELETE_SELF | MOVE_SELF;
+
+    private final File directory;
+    private final long quietPeriodMillis;
+    private final DirectoryChangeListener listener;
+    private final Handler mainHandler;
+
+    //Guarded by 'this'. Null when the whole directory has to be listed again.
+    private HashSet<String> pendingNames;
+    private boolean flushScheduled;
+    //Uptime the pending changes have to be reported by, guarded by 'this'.
+    private long flushDeadline;
+    private volatile boolean stopped;
+
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            Set<String> names;
+            synchronized (DirectoryObserver.this) {
+                names = pendingNames;
+                pendingNames = new HashSet<>();
+                flushScheduled = false;
+            }
+            //A change seen while this one was about to run posts another flush, with nothing left for it.
+            if (!stopped && (names == null || !names.isEmpty())) {
+                listener.onDirectoryChanged(directory, names);
+            }
+        }
+    };
+
+    /**
+     * @param directory         The directory to watch. Call startWatching() to start.
+     * @param quietPeriodMillis How long the directory must be quiet before its changes are reported.
+     * @param listener          Called on the main thread.
+     */
+    public DirectoryObserver(File directory, long quietPeriodMillis, DirectoryChangeListener listener) {
+        //The File constructor needs Q.
+        super(directory.getAbsolutePath(), EVENTS);
+        this.directory = directory;
+        this.quietPeriodMillis = quietPeriodMillis;
+        this.listener = listener;
+        mainHandler = new Handler(Looper.getMainLooper());
+        pendingNames = new HashSet<>();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /*  Called on the thread of the FileObserver.
+     */
+    @Override
+    public void onEvent(int event, String path) {
+        long now = SystemClock.uptimeMillis();
+        synchronized (this) {
+            if ((event & (DELETE_SELF | MOVE_SELF)) != 0 || path == null) {
+                pendingNames = null;
+            } else if (pendingNames != null) {
+                pendingNames.add(path);
+            }
+            if (!flushScheduled) {
+                flushScheduled = true;
+                flushDeadline = now + MAX_LATENCY_PERIODS * quietPeriodMillis;
+            }
+            //Pushed back by every change, up to the deadline of the first pending one.
+            mainHandler.removeCallbacks(flush);
+            mainHandler.postAtTime(flush, Math.min(now + quietPeriodMillis, flushDeadline));
+        }
+    }
+
+    @Override
+    public void stopWatching() {
+        stopped = true;
+        super.stopWatching();
+        mainHandler.removeCallbacks(flush);
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import android.view.View;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+/**
+ * Interface definition for a callback to be invoked
+ * when a row of the file list is clicked.
+ */
+public interface FileItemClickListener {
+
+    /**
+     * Called when a row is clicked.
+     *
+     * @param view     The row that was clicked.
+     * @param position Adapter position of the row.
+     * @param item     The item bound to the row.
+     */
+    void onFileItemClick(View view, int position, FileListItem item);
+}
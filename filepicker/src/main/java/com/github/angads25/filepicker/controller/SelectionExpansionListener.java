@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller;
+
+import java.io.File;
+
+/**
+ * Interface definition for callbacks invoked on the main thread while the
+ * files of a subtree are being selected, see DirectoryLoader#expand.
+ */
+public interface SelectionExpansionListener {
+
+    /**
+     * Called periodically while the subtree is walked.
+     *
+     * @param directory The directory whose subtree is walked.
+     * @param fileCount Number of files found so far.
+     * @param totalSize Size in bytes of the files found so far.
+     */
+    void onExpansionProgress(File directory, int fileCount, long totalSize);
+
+    /**
+     * Called once the files found have been selected. Not called if the
+     * expansion was cancelled, nothing is selected then.
+     *
+     * @param directory The directory whose subtree was walked.
+     * @param fileCount Number of files selected.
+     * @param totalSize Size in bytes of the files selected.
+     */
+    void onExpansionFinished(File directory, int fileCount, long totalSize);
+}
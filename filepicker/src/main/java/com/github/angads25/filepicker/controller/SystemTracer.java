@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller;
+
+import android.os.Trace;
+
+import com.github.angads25.filepicker.utils.Tracing;
+
+/*  Sends the trace sections of the engine to android.os.Trace, so that they
+ *  show in systrace and Perfetto captures of the app. Installed by the
+ *  dialog, unless the app has set a tracer of its own.
+ */
+public class SystemTracer implements SectionTracer {
+    /**
+     * Installs a SystemTracer as the tracer of the engine, unless a tracer
+     * has already been set, see {@link Tracing#setDefaultTracer}.
+     */
+    public static void installDefault() {
+        Tracing.setDefaultTracer(new SystemTracer());
+    }
+
+    @Override
+    public void beginSection(String name) {
+        Trace.beginSection(name);
+    }
+
+    @Override
+    public void endSection() {
+        Trace.endSection();
+    }
+}
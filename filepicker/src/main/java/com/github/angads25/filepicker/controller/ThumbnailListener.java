@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller;
+
+import android.graphics.Bitmap;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+/**
+ * Interface definition for a callback to be invoked on the main thread
+ * when the thumbnail of a file has been loaded.
+ */
+public interface ThumbnailListener {
+
+    /**
+     * Not called if the request was cancelled, or if no thumbnail could be
+     * made for the file.
+     *
+     * @param item      The file the thumbnail was requested for.
+     * @param thumbnail Its thumbnail, square, at the size of the loader.
+     */
+    void onThumbnailLoaded(FileListItem item, Bitmap thumbnail);
+}
@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.ExifInterface;
+import android.media.ThumbnailUtils;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.provider.MediaStore;
+import android.util.LruCache;
+import android.webkit.MimeTypeMap;
+
+import com.github.angads25.filepicker.model.FileListItem;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/*  Loads square thumbnails of images and videos in background, at the size
+ *  they are shown. Thumbnails are kept in a memory LRU bounded in bytes, and
+ *  in a disk cache under the cache directory of the app, so that they are
+ *  not decoded again when a directory is opened again. Entries of both are
+ *  keyed by path, last modified time and length: a file that changed gets a
+ *  new thumbnail.
+ *
+ *  Decoding runs on a small pool of background threads. The most recent
+ *  requests run first, those of rows scrolled past are cancelled when their
+ *  row is bound to another item. Nothing but the memory cache lookup runs on
+ *  the calling thread.
+ */
+public class ThumbnailLoader {
+    private static final String DISK_CACHE_DIR = "filepicker-thumbnails";
+    private static final long DISK_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int MEMORY_CACHE_MAX_BYTES = 16 * 1024 * 1024;
+    private static final int DECODER_THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    private static final int DISK_QUALITY = 80;
+
+    private final int size;
+    private final File cacheDir;
+    private final LruCache<String, Bitmap> memoryCache;
+    private final ThreadPoolExecutor executor;
+    private final Handler mainHandler;
+    //Keys of the files no thumbnail could be made for, not tried again.
+    private final Set<String> failed;
+    //Requests neither delivered nor cancelled yet, queued or being decoded.
+    private final Set<Request> outstanding;
+
+    //Bytes in the disk cache, -1 until counted. Guarded by diskLock.
+    private final Object diskLock = new Object();
+    private long diskBytes = -1;
+
+    /**
+     * @param context Used to locate the cache directory.
+     * @param size    Width and height of the thumbnails, in pixels.
+     */
+    public ThumbnailLoader(Context context, int size) {
+        this.size = size;
+        cacheDir = new File(context.getCacheDir(), DISK_CACHE_DIR);
+        int memoryBytes = (int) Math.min(MEMORY_CACHE_MAX_BYTES, Runtime.getRuntime().maxMemory() / 16);
+        memoryCache = new LruCache<String, Bitmap>(memoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+        //Last in, first out: the rows in view are decoded before the ones scrolled past.
+        executor = new ThreadPoolExecutor(DECODER_THREADS, DECODER_THREADS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingDeque<Runnable>() {
+                    @Override
+                    public boolean offer(Runnable runnable) {
+                        return offerFirst(runnable);
+                    }
+                }, new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                        runnable.run();
+                    }
+                }, "FilePicker-Thumbnails");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+        mainHandler = new Handler(Looper.getMainLooper());
+        failed = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        outstanding = Collections.newSetFromMap(new ConcurrentHashMap<Request, Boolean>());
+    }
+
+    /**
+     * @return true if a thumbnail can be made for a file named 'name', ie. if
+     * it is an image or a video. Looks the extension up, callers binding the
+     * same item repeatedly should keep the result.
+     */
+    public static boolean canPreview(String name) {
+        int dot = name.lastIndexOf('.');
+        if (dot < 0 || dot == name.length() - 1) {
+            return false;
+        }
+        String extension = name.substring(dot + 1).toLowerCase(Locale.ROOT);
+        String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+        return mimeType != null && (mimeType.startsWith("image/") || mimeType.startsWith("video/"));
+    }
+
+    /**
+     * @return the key of the thumbnail of 'item', for {@link #getCached} and
+     * {@link #load}. Changes with the time and size of the item.
+     */
+    public static String key(FileListItem item) {
+        return item.getLocation() + '\n' + item.getTime() + '\n' + item.getSize();
+    }
+
+    /**
+     * @param key The key of the file, see {@link #key}.
+     * @return the thumbnail of the file if it is in the memory cache, else null.
+     */
+    public Bitmap getCached(String key) {
+        return memoryCache.get(key);
+    }
+
+    /**
+     * Starts loading the thumbnail of 'item' in background. Must be called on
+     * the main thread.
+     *
+     * @param item     The file, an image or a video, see {@link #canPreview}.
+     * @param key      The key of the file, see {@link #key}.
+     * @param listener Receives the thumbnail on the main thread, unless cancelled.
+     * @return the request, to cancel it. Null if no thumbnail can be made.
+     */
+    public Request load(FileListItem item, String key, ThumbnailListener listener) {
+        if (failed.contains(key)) {
+            return null;
+        }
+        Request request = new Request(item, key, listener);
+        outstanding.add(request);
+        request.future = executor.submit(request);
+        return request;
+    }
+
+    /**
+     * Cancels all the requests. Those not started yet are dropped, those being
+     * decoded are not delivered. Must be called on the main thread.
+     */
+    public void cancelAll() {
+        for (Request request : outstanding) {
+            request.cancel();
+        }
+        //Cancelled futures would otherwise stay queued until a thread gets to them.
+        executor.purge();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+
+    /*  Runs on a decoder thread.
+     */
+    private Bitmap loadThumbnail(Request request) {
+        File cached = new File(cacheDir, diskName(request.key));
+        //Checked first, decodeFile() logs an error for a missing file.
+        Bitmap thumbnail = cached.isFile() ? BitmapFactory.decodeFile(cached.getPath()) : null;
+        if (thumbnail != null) {
+            //Marks it recently used, the disk cache is trimmed oldest first.
+            cached.setLastModified(System.currentTimeMillis());
+            return thumbnail;
+        }
+        if (request.cancelled) {
+            return null;
+        }
+        String path = request.item.getLocation();
+        thumbnail = isVideo(request.item.getFilename()) ? decodeVideo(path) : decodeImage(path);
+        if (thumbnail != null) {
+            writeToDisk(cached, thumbnail);
+        }
+        return thumbnail;
+    }
+
+    private static boolean isVideo(String name) {
+        String extension = name.substring(name.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(extension);
+        return mimeType != null && mimeType.startsWith("video/");
+    }
+
+    /*  Decodes the image subsampled to at least the thumbnail size, then crops
+     *  and scales it, turned as its Exif orientation says.
+     */
+    private Bitmap decodeImage(String path) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(path, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+        int sampleSize = 1;
+        while (Math.min(options.outWidth, options.outHeight) / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        Bitmap bitmap = BitmapFactory.decodeFile(path, options);
+        if (bitmap == null) {
+            return null;
+        }
+        Bitmap thumbnail = ThumbnailUtils.extractThumbnail(bitmap, size, size, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+        return rotate(thumbnail, readRotation(path));
+    }
+
+    private Bitmap decodeVideo(String path) {
+        Bitmap frame = ThumbnailUtils.createVideoThumbnail(path, MediaStore.Images.Thumbnails.MINI_KIND);
+        if (frame == null) {
+            return null;
+        }
+        return ThumbnailUtils.extractThumbnail(frame, size, size, ThumbnailUtils.OPTIONS_RECYCLE_INPUT);
+    }
+
+    private static int readRotation(String path) {
+        try {
+            int orientation = new ExifInterface(path).getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+            switch (orientation) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private static Bitmap rotate(Bitmap bitmap, int degrees) {
+        if (degrees == 0) {
+            return bitmap;
+        }
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+        Bitmap rotated = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (rotated != bitmap) {
+            bitmap.recycle();
+        }
+        return rotated;
+    }
+
+    /*  Writes to a temporary file first, so that a thumbnail is either
+     *  complete or missing. Trims the cache when it outgrows its budget.
+     */
+    private void writeToDisk(File cached, Bitmap thumbnail) {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            return;
+        }
+        File temp = new File(cacheDir, cached.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            thumbnail.compress(Bitmap.CompressFormat.WEBP, DISK_QUALITY, out);
+        } catch (IOException e) {
+            temp.delete();
+            return;
+        }
+        long length = temp.length();
+        if (!temp.renameTo(cached)) {
+            temp.delete();
+            return;
+        }
+        synchronized (diskLock) {
+            if (diskBytes < 0) {
+                diskBytes = 0;
+                File[] files = cacheDir.listFiles();
+                if (files != null) {
+                    for (File file : files) {
+                        diskBytes += file.length();
+                    }
+                }
+            } else {
+                diskBytes += length;
+            }
+            if (diskBytes > DISK_CACHE_BYTES) {
+                trimDisk();
+            }
+        }
+    }
+
+    /*  Deletes the least recently used thumbnails until the cache is down to
+     *  three quarters of its budget. Called with diskLock held.
+     */
+    private void trimDisk() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        final long[] times = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            times[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer index1, Integer index2) {
+                return Long.compare(times[index1], times[index2]);
+            }
+        });
+        for (Integer index : order) {
+            if (diskBytes <= DISK_CACHE_BYTES * 3 / 4) {
+                break;
+            }
+            long length = files[index].length();
+            if (files[index].delete()) {
+                diskBytes -= length;
+            }
+        }
+    }
+
+    /*  Hex SHA-1 of the key: fixed length, safe as a file name.
+     */
+    private static String diskName(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes("UTF-8"));
+            StringBuilder name = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                name.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            return name.toString();
+        } catch (NoSuchAlgorithmException | IOException e) {
+            return Integer.toHexString(key.hashCode());
+        }
+    }
+
+    /**
+     * A pending thumbnail. Cancelled requests are dropped before decoding if
+     * they are still queued, and never delivered.
+     */
+    public class Request implements Runnable {
+        private final FileListItem item;
+        private final String key;
+        private final ThumbnailListener listener;
+        private volatile boolean cancelled;
+        private Future<?> future;
+
+        Request(FileListItem item, String key, ThumbnailListener listener) {
+            this.item = item;
+            this.key = key;
+            this.listener = listener;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            final Bitmap thumbnail = loadThumbnail(this);
+            if (thumbnail == null) {
+                outstanding.remove(this);
+                if (!cancelled) {
+                    failed.add(key);
+                }
+                return;
+            }
+            memoryCache.put(key, thumbnail);
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    outstanding.remove(Request.this);
+                    if (!cancelled) {
+                        listener.onThumbnailLoaded(item, thumbnail);
+                    }
+                }
+            });
+        }
+
+        /**
+         * Must be called on the main thread.
+         */
+        public void cancel() {
+            cancelled = true;
+            outstanding.remove(this);
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.github.angads25.filepicker.controller.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.ListView;
+
+import com.github.angads25.filepicker.R;
+import com.github.angads25.filepicker.controller.NotifyItemChecked;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.SelectionStore;
+
+/**
+ * Adapter Class that extends {@link BaseAdapter} that is used to populate
+ * {@link ListView} from a {@link CompactListing}. Rows are bound from the
+ * columns of the listing, a FileListItem is only created for the row that
+ * is clicked or checked.
+ */
+public class CompactListAdapter extends BaseAdapter {
+    private final Context context;
+    private final FileRowBinder binder;
+    private FileListItem parent;
+    private CompactListing listing;
+
+    /**
+     * @param selection The selection rows are checked against and that checkboxes update.
+     */
+    public CompactListAdapter(Context context, DialogProperties properties, SelectionStore selection) {
+        this.context = context;
+        this.binder = new FileRowBinder(context, properties, selection);
+    }
+
+    /**
+     * Replaces the listing shown.
+     *
+     * @param parent  Entry for the parent directory, shown on top. May be null.
+     * @param listing The entries of the directory.
+     */
+    public void setListing(FileListItem parent, CompactListing listing) {
+        this.parent = parent;
+        this.listing = listing;
+        notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        if (listing == null) {
+            return 0;
+        }
+        return listing.size() + (parent != null ? 1 : 0);
+    }
+
+    /**
+     * @return a new FileListItem for the row at 'i', or the parent entry.
+     */
+    @Override
+    public FileListItem getItem(int i) {
+        if (parent != null) {
+            if (i == 0) {
+                return parent;
+            }
+            i--;
+        }
+        return listing.toItem(i);
+    }
+
+    @Override
+    public long getItemId(int i) {
+        return i;
+    }
+
+    @Override
+    public View getView(int i, View view, ViewGroup viewGroup) {
+        final FileRowBinder.Row holder;
+        if (view == null) {
+            view = LayoutInflater.from(context).inflate(R.layout.dialog_file_list_item, viewGroup, false);
+            holder = binder.new Row(view);
+            view.setTag(holder);
+        } else {
+            holder = (FileRowBinder.Row) view.getTag();
+        }
+        if (parent != null && i == 0) {
+            binder.bind(view, holder, parent, 0);
+        } else {
+            binder.bindCompact(view, holder, listing, parent != null ? i - 1 : i);
+        }
+        return view;
+    }
+
+    public void setNotifyItemCheckedListener(NotifyItemChecked notifyItemChecked) {
+        binder.setNotifyItemCheckedListener(notifyItemChecked);
+    }
+
+    /**
+     * Runs 'callback' on the main thread once the next row has been bound,
+     * eg. to measure the time until the first rows of a listing are shown.
+     */
+    public void runOnNextBind(Runnable callback) {
+        binder.runOnNextBind(callback);
+    }
+}
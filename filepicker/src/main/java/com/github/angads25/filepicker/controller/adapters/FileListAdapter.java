@@ -20,28 +20,18 @@ import android.content.Context;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.widget.BaseAdapter;
-import android.widget.CompoundButton;
-import android.widget.ImageView;
 import android.widget.ListView;
-import android.widget.TextView;
 
 import com.github.angads25.filepicker.R;
 import com.github.angads25.filepicker.controller.NotifyItemChecked;
-import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.controller.ThumbnailLoader;
 import com.github.angads25.filepicker.model.DialogProperties;
 import com.github.angads25.filepicker.model.FileListItem;
-import com.github.angads25.filepicker.model.MarkedItemList;
-import com.github.angads25.filepicker.utils.ColorUtils;
-import com.github.angads25.filepicker.utils.Utility;
-import com.google.android.material.checkbox.MaterialCheckBox;
+import com.github.angads25.filepicker.model.SelectionStore;
 
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
-import java.util.Locale;
+import java.util.List;
 
 /* <p>
  * Created by Angad Singh on 09-07-2016.
@@ -53,15 +43,21 @@ import java.util.Locale;
  * used to populate {@link ListView} with file info.
  */
 public class FileListAdapter extends BaseAdapter {
-    private ArrayList<FileListItem> listItem;
+    private List<FileListItem> listItem;
     private Context context;
-    private DialogProperties properties;
-    private NotifyItemChecked notifyItemChecked;
+    private FileRowBinder binder;
 
     public FileListAdapter(ArrayList<FileListItem> listItem, Context context, DialogProperties properties) {
+        this(listItem, context, properties, new SelectionStore());
+    }
+
+    /**
+     * @param selection The selection rows are checked against and that checkboxes update.
+     */
+    public FileListAdapter(ArrayList<FileListItem> listItem, Context context, DialogProperties properties, SelectionStore selection) {
         this.listItem = listItem;
         this.context = context;
-        this.properties = properties;
+        this.binder = new FileRowBinder(context, properties, selection);
     }
 
     @Override
@@ -81,103 +77,55 @@ public class FileListAdapter extends BaseAdapter {
 
     @Override
     public View getView(final int i, View view, ViewGroup viewGroup) {
-        final ViewHolder holder;
+        final FileRowBinder.Row holder;
         if (view == null) {
             view = LayoutInflater.from(context).inflate(R.layout.dialog_file_list_item, viewGroup, false);
-            holder = new ViewHolder(view);
+            holder = binder.new Row(view);
             view.setTag(holder);
         } else {
-            holder = (ViewHolder) view.getTag();
-        }
-        final FileListItem item = listItem.get(i);
-        if (MarkedItemList.hasItem(item.getLocation())) {
-            Animation animation = AnimationUtils.loadAnimation(context, R.anim.marked_item_animation);
-            view.setAnimation(animation);
-        } else {
-            Animation animation = AnimationUtils.loadAnimation(context, R.anim.unmarked_item_animation);
-            view.setAnimation(animation);
-        }
-        if (item.isDirectory()) {
-            holder.icon.setImageResource(R.drawable.ic_type_folder);
-            holder.icon.setColorFilter(null);
-            if (properties.selection_type == DialogConfigs.FILE_SELECT) {
-                holder.checkbox.setVisibility(View.INVISIBLE);
-            } else {
-                holder.checkbox.setVisibility(View.VISIBLE);
-            }
-        } else {
-            holder.icon.setImageResource(R.drawable.ic_type_file);
-            holder.icon.setColorFilter(ColorUtils.getAccentColor(context));
-            if (properties.selection_type == DialogConfigs.DIR_SELECT) {
-                holder.checkbox.setVisibility(View.INVISIBLE);
-            } else {
-                holder.checkbox.setVisibility(View.VISIBLE);
-            }
-        }
-        holder.icon.setContentDescription(item.getFilename());
-        holder.name.setText(item.getFilename());
-        SimpleDateFormat sdate = new SimpleDateFormat("dd.MM.yyyy, HH:mm", Locale.getDefault());
-        Date date = new Date(item.getTime());
-        if (i == 0 && item.getFilename().startsWith(context.getString(R.string.label_parent_dir))) {
-            holder.type.setText(R.string.label_parent_directory);
-        } else if (item.isDirectory()) {
-            holder.type.setText(String.format(context.getString(R.string.last_edit), sdate.format(date)));
-        } else {
-            holder.type.setText(String.format(context.getString(R.string.last_edit_with_size), Utility.formatSize(context, item.getSize()), sdate.format(date)));
+            holder = (FileRowBinder.Row) view.getTag();
         }
-
-        holder.checkbox.setOnCheckedChangeListener(null);
-        if (holder.checkbox.getVisibility() == View.VISIBLE) {
-            if (i == 0 && item.getFilename().startsWith(context.getString(R.string.label_parent_dir))) {
-                holder.checkbox.setVisibility(View.INVISIBLE);
-            }
-
-            if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
-                holder.checkbox.setVisibility(View.INVISIBLE);
-            }
-
-            if (MarkedItemList.hasItem(item.getLocation())) {
-                holder.checkbox.setChecked(true);
-                holder.checkbox.jumpDrawablesToCurrentState();
-            } else {
-                holder.checkbox.setChecked(false);
-                holder.checkbox.jumpDrawablesToCurrentState();
-            }
-        }
-
-        holder.checkbox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
-            @Override
-            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
-                item.setMarked(isChecked);
-                if (item.isMarked()) {
-                    if (properties.selection_mode == DialogConfigs.MULTI_MODE) {
-                        MarkedItemList.addSelectedItem(item);
-                    } else {
-                        MarkedItemList.addSingleFile(item);
-                    }
-                } else {
-                    MarkedItemList.removeSelectedItem(item.getLocation());
-                }
-                notifyItemChecked.notifyCheckBoxIsClicked();
-            }
-        });
+        binder.bind(view, holder, listItem.get(i), i);
         return view;
     }
 
-    private class ViewHolder {
-        ImageView icon;
-        TextView name, type;
-        MaterialCheckBox checkbox;
+    /**
+     * Shows 'items' instead of the list given to the constructor, eg. the
+     * entries of it matching a filter. The adapter keeps a reference to it,
+     * call notifyDataSetChanged() once it changed.
+     */
+    public void setItems(List<FileListItem> items) {
+        listItem = items;
+    }
 
-        ViewHolder(View itemView) {
-            name = (TextView) itemView.findViewById(R.id.fname);
-            type = (TextView) itemView.findViewById(R.id.ftype);
-            icon = (ImageView) itemView.findViewById(R.id.image_type);
-            checkbox = itemView.findViewById(R.id.file_mark);
+    /**
+     * Highlights the first match of 'query' in the names of the rows.
+     *
+     * @param query Normalized query, see TypeAheadFilter. Empty for none.
+     */
+    public void setHighlight(String query) {
+        if (binder.setHighlight(query)) {
+            notifyDataSetChanged();
         }
     }
 
     public void setNotifyItemCheckedListener(NotifyItemChecked notifyItemChecked) {
-        this.notifyItemChecked = notifyItemChecked;
+        binder.setNotifyItemCheckedListener(notifyItemChecked);
+    }
+
+    /**
+     * Runs 'callback' on the main thread once the next row has been bound,
+     * eg. to measure the time until the first rows of a listing are shown.
+     */
+    public void runOnNextBind(Runnable callback) {
+        binder.runOnNextBind(callback);
+    }
+
+    /**
+     * Shows thumbnails of images and videos, made by 'thumbnails'. Must be
+     * set before the adapter is attached.
+     */
+    public void setThumbnailLoader(ThumbnailLoader thumbnails) {
+        binder.setThumbnailLoader(thumbnails);
     }
 }
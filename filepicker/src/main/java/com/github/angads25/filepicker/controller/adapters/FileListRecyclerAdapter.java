@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.github.angads25.filepicker.R;
+import com.github.angads25.filepicker.controller.FileItemClickListener;
+import com.github.angads25.filepicker.controller.FileItemLongClickListener;
+import com.github.angads25.filepicker.controller.NotifyItemChecked;
+import com.github.angads25.filepicker.controller.ThumbnailLoader;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.SelectionStore;
+
+import java.util.List;
+
+/**
+ * Adapter Class that extends {@link RecyclerView.Adapter} that is
+ * used to populate {@link RecyclerView} with file info. Lists are
+ * diffed in background with {@link AsyncListDiffer}, so that only
+ * the rows that changed are bound again.
+ */
+public class FileListRecyclerAdapter extends RecyclerView.Adapter<FileListRecyclerAdapter.RowViewHolder> {
+    private static final DiffUtil.ItemCallback<FileListItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<FileListItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull FileListItem oldItem, @NonNull FileListItem newItem) {
+            return oldItem.getLocation().equals(newItem.getLocation())
+                    && oldItem.isParentEntry() == newItem.isParentEntry();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull FileListItem oldItem, @NonNull FileListItem newItem) {
+            return oldItem.isDirectory() == newItem.isDirectory()
+                    && oldItem.getTime() == newItem.getTime()
+                    && oldItem.getSize() == newItem.getSize()
+                    && oldItem.getContentSize() == newItem.getContentSize()
+                    && oldItem.getItemCount() == newItem.getItemCount()
+                    && oldItem.isAttributesPending() == newItem.isAttributesPending()
+                    && oldItem.getFilename().equals(newItem.getFilename());
+        }
+    };
+
+    private final Context context;
+    private final FileRowBinder binder;
+    private final AsyncListDiffer<FileListItem> differ;
+    private FileItemClickListener itemClickListener;
+    private FileItemLongClickListener itemLongClickListener;
+
+    /**
+     * @param selection The selection rows are checked against and that checkboxes update.
+     */
+    public FileListRecyclerAdapter(Context context, DialogProperties properties, SelectionStore selection) {
+        this.context = context;
+        this.binder = new FileRowBinder(context, properties, selection);
+        this.differ = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Replaces the list. The difference with the current list is computed in
+     * background, and only the rows that changed are notified.
+     *
+     * @param items The new list. It must not be modified afterwards, pass a copy.
+     */
+    public void submitList(List<FileListItem> items) {
+        differ.submitList(items);
+    }
+
+    /**
+     * Replaces the list without diffing it against the current one, eg. with
+     * the content of another directory. Diffing costs O(N + D^2), where D
+     * nears N when few items are kept, which would take seconds on large
+     * lists. Supersedes any diff still in flight.
+     *
+     * @param items The new list. It must not be modified afterwards, pass a copy.
+     */
+    public void replaceList(List<FileListItem> items) {
+        //Submitting null drops the current list at once, the next one is then inserted as is.
+        differ.submitList(null);
+        differ.submitList(items);
+    }
+
+    public List<FileListItem> getCurrentList() {
+        return differ.getCurrentList();
+    }
+
+    public FileListItem getItem(int position) {
+        return differ.getCurrentList().get(position);
+    }
+
+    @Override
+    public int getItemCount() {
+        return differ.getCurrentList().size();
+    }
+
+    /**
+     * Ids are derived from the path of the items, so that they are stable
+     * across refreshes of a directory.
+     */
+    @Override
+    public long getItemId(int position) {
+        FileListItem item = getItem(position);
+        return pathId(item.getLocation(), item.isParentEntry());
+    }
+
+    @NonNull
+    @Override
+    public RowViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.dialog_file_list_item, parent, false);
+        return new RowViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull RowViewHolder holder, int position) {
+        binder.bind(holder.itemView, holder.row, getItem(position), position);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RowViewHolder holder) {
+        binder.unbind(holder.row);
+    }
+
+    /**
+     * Highlights the first match of 'query' in the names of the rows. The
+     * rows shown are bound again.
+     *
+     * @param query Normalized query, see TypeAheadFilter. Empty for none.
+     */
+    public void setHighlight(String query) {
+        if (binder.setHighlight(query)) {
+            notifyItemRangeChanged(0, getItemCount());
+        }
+    }
+
+    public void setNotifyItemCheckedListener(NotifyItemChecked notifyItemChecked) {
+        binder.setNotifyItemCheckedListener(notifyItemChecked);
+    }
+
+    /**
+     * Runs 'callback' on the main thread once the next row has been bound,
+     * eg. to measure the time until the first rows of a listing are shown.
+     */
+    public void runOnNextBind(Runnable callback) {
+        binder.runOnNextBind(callback);
+    }
+
+    /**
+     * Shows thumbnails of images and videos, made by 'thumbnails'. Must be
+     * set before the adapter is attached.
+     */
+    public void setThumbnailLoader(ThumbnailLoader thumbnails) {
+        binder.setThumbnailLoader(thumbnails);
+    }
+
+    public void setFileItemClickListener(FileItemClickListener itemClickListener) {
+        this.itemClickListener = itemClickListener;
+    }
+
+    public void setFileItemLongClickListener(FileItemLongClickListener itemLongClickListener) {
+        this.itemLongClickListener = itemLongClickListener;
+    }
+
+    /*  64 bit FNV-1a hash of the path. The parent entry points to the same
+     *  path as the directory it leads to, it is told apart by its own bit.
+     */
+    private static long pathId(String path, boolean parentEntry) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < path.length(); i++) {
+            hash ^= path.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return (hash & ~1L) | (parentEntry ? 1 : 0);
+    }
+
+    public class RowViewHolder extends RecyclerView.ViewHolder implements View.OnClickListener,
+            View.OnLongClickListener {
+        final FileRowBinder.Row row;
+
+        RowViewHolder(View itemView) {
+            super(itemView);
+            row = binder.new Row(itemView);
+            itemView.setOnClickListener(this);
+            itemView.setOnLongClickListener(this);
+        }
+
+        @Override
+        public void onClick(View view) {
+            int position = getAdapterPosition();
+            if (position != RecyclerView.NO_POSITION && itemClickListener != null) {
+                itemClickListener.onFileItemClick(view, position, getItem(position));
+            }
+        }
+
+        @Override
+        public boolean onLongClick(View view) {
+            int position = getAdapterPosition();
+            return position != RecyclerView.NO_POSITION && itemLongClickListener != null
+                    && itemLongClickListener.onFileItemLongClick(view, position, getItem(position));
+        }
+    }
+}
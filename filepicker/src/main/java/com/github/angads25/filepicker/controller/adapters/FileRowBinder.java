@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2016 Angad Singh
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.angads25.filepicker.controller.adapters;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ColorFilter;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffColorFilter;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.TextUtils;
+import android.text.style.ForegroundColorSpan;
+import android.view.View;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+import android.widget.CompoundButton;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.github.angads25.filepicker.R;
+import com.github.angads25.filepicker.controller.NotifyItemChecked;
+import com.github.angads25.filepicker.controller.ThumbnailListener;
+import com.github.angads25.filepicker.controller.ThumbnailLoader;
+import com.github.angads25.filepicker.engine.TypeAheadFilter;
+import com.github.angads25.filepicker.model.CompactListing;
+import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.SelectionStore;
+import com.github.angads25.filepicker.utils.ColorUtils;
+import com.github.angads25.filepicker.utils.TextTemplate;
+import com.github.angads25.filepicker.utils.Tracing;
+import com.github.angads25.filepicker.utils.Utility;
+import com.google.android.material.checkbox.MaterialCheckBox;
+
+import java.text.FieldPosition;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+
+/*  Binds FileListItem to the views of a dialog_file_list_item row. Shared by
+ *  the ListView and the RecyclerView adapters. Resources are resolved once,
+ *  so that binding a row does not allocate, unless its name is highlighted.
+ */
+class FileRowBinder {
+    private static final int MAX_DETAILS = 512;
+
+    private final Context context;
+    private final DialogProperties properties;
+    private final SelectionStore selection;
+    private NotifyItemChecked notifyItemChecked;
+    private ThumbnailLoader thumbnails;
+    private int thumbnailSize;
+    private Runnable onNextBind;
+    private String highlight = "";
+
+    private final ColorFilter fileIconFilter;
+    private final ForegroundColorSpan highlightSpan;
+    private final TextTemplate lastEditFormat, lastEditWithSizeFormat;
+    private final SimpleDateFormat dateFormat;
+    private final Date date;
+    //Subtitles are formatted into these, compact rows are bound from them without a String.
+    private final StringBuilder subtitle = new StringBuilder(64);
+    private final StringBuilder sizeText = new StringBuilder(32);
+    private final StringBuffer dateText = new StringBuffer(24);
+    private final FieldPosition datePosition = new FieldPosition(0);
+    //Kept here rather than on the items, which the listing cache shares between dialogs.
+    //Access ordered, the least recently bound are dropped first. Formatted with the
+    //resources of 'context', so they last as long as the binder and no longer.
+    private final LinkedHashMap<FileListItem, ItemDetails> details = new LinkedHashMap<>(16, 0.75f, true);
+
+    FileRowBinder(Context context, DialogProperties properties, SelectionStore selection) {
+        this.context = context;
+        this.properties = properties;
+        this.selection = selection;
+        fileIconFilter = new PorterDuffColorFilter(ColorUtils.getAccentColor(context), PorterDuff.Mode.SRC_ATOP);
+        highlightSpan = new ForegroundColorSpan(ColorUtils.getAccentColor(context));
+        lastEditFormat = new TextTemplate(context.getString(R.string.last_edit));
+        lastEditWithSizeFormat = new TextTemplate(context.getString(R.string.last_edit_with_size));
+        dateFormat = new SimpleDateFormat("dd.MM.yyyy, HH:mm", Locale.getDefault());
+        date = new Date();
+    }
+
+    void setNotifyItemCheckedListener(NotifyItemChecked notifyItemChecked) {
+        this.notifyItemChecked = notifyItemChecked;
+    }
+
+    /*  Must be set before the first row is created, rows then reserve the
+     *  room of a thumbnail for their icon.
+     */
+    void setThumbnailLoader(ThumbnailLoader thumbnails) {
+        this.thumbnails = thumbnails;
+        thumbnailSize = context.getResources().getDimensionPixelSize(R.dimen.thumbnail_size);
+    }
+
+    /*  Runs 'callback' once the next row has been bound.
+     */
+    void runOnNextBind(Runnable callback) {
+        onNextBind = callback;
+    }
+
+    /*  Highlights the first match of 'query' in the names, normalized as by
+     *  TypeAheadFilter. Empty for none. Takes effect on the next binds.
+     */
+    boolean setHighlight(String query) {
+        if (highlight.equals(query)) {
+            return false;
+        }
+        highlight = query;
+        return true;
+    }
+
+    void bind(View view, Row holder, FileListItem item, int position) {
+        Tracing.beginSection("FilePicker:bind");
+        try {
+            bindRow(view, holder, item, position);
+        } finally {
+            Tracing.endSection();
+        }
+        if (onNextBind != null) {
+            Runnable callback = onNextBind;
+            onNextBind = null;
+            callback.run();
+        }
+    }
+
+    private void bindRow(View view, Row holder, FileListItem item, int position) {
+        holder.cancelThumbnail();
+        holder.item = item;
+        holder.listing = null;
+        boolean marked = selection.hasItem(item.getLocation());
+        view.setAnimation(marked ? holder.markedAnimation : holder.unmarkedAnimation);
+        //Lazily listed items wait for their attributes, the subtitle and the thumbnail show them.
+        ItemDetails details = item.isAttributesPending() ? null : getDetails(item);
+        if (item.isDirectory()) {
+            holder.setIcon(R.drawable.ic_type_folder, null);
+        } else {
+            bindFileIcon(holder, item, details);
+        }
+        holder.icon.setContentDescription(item.getFilename());
+        holder.name.setText(getName(item));
+        boolean parentEntry = position == 0 && item.isParentEntry();
+        if (parentEntry) {
+            holder.type.setText(R.string.label_parent_directory);
+        } else {
+            holder.type.setText(details != null ? details.subtitle : "");
+        }
+        bindCheckbox(holder, item.isDirectory(), parentEntry, marked);
+    }
+
+    /*  Binds the entry at 'index' of a compact listing, reading its columns
+     *  directly. Its FileListItem is only created if the row gets checked.
+     *  Compact rows show no thumbnail.
+     */
+    void bindCompact(View view, Row holder, CompactListing listing, int index) {
+        Tracing.beginSection("FilePicker:bind");
+        try {
+            holder.cancelThumbnail();
+            holder.item = null;
+            holder.listing = listing;
+            holder.index = index;
+            boolean directory = listing.isDirectory(index);
+            boolean marked = selection.getFileCount() > 0 && selection.hasItem(listing.getLocation(index));
+            view.setAnimation(marked ? holder.markedAnimation : holder.unmarkedAnimation);
+            if (directory) {
+                holder.setIcon(R.drawable.ic_type_folder, null);
+            } else {
+                holder.setIcon(R.drawable.ic_type_file, fileIconFilter);
+            }
+            //The name next to it is read out already.
+            holder.icon.setContentDescription(null);
+            holder.name.setText(listing.getNameBuffer(), listing.getNameStart(index), listing.getNameLength(index));
+            formatSubtitle(directory, listing.getTime(index), listing.getSize(index), -1, 0);
+            holder.setType(subtitle);
+            bindCheckbox(holder, directory, false, marked);
+        } finally {
+            Tracing.endSection();
+        }
+        if (onNextBind != null) {
+            Runnable callback = onNextBind;
+            onNextBind = null;
+            callback.run();
+        }
+    }
+
+    private void bindCheckbox(Row holder, boolean directory, boolean parentEntry, boolean marked) {
+        if (directory) {
+            if (properties.selection_type == DialogConfigs.FILE_SELECT) {
+                holder.checkbox.setVisibility(View.INVISIBLE);
+            } else {
+                holder.checkbox.setVisibility(View.VISIBLE);
+            }
+        } else {
+            if (properties.selection_type == DialogConfigs.DIR_SELECT) {
+                holder.checkbox.setVisibility(View.INVISIBLE);
+            } else {
+                holder.checkbox.setVisibility(View.VISIBLE);
+            }
+        }
+
+        holder.checkbox.setOnCheckedChangeListener(null);
+        if (holder.checkbox.getVisibility() == View.VISIBLE) {
+            if (parentEntry) {
+                holder.checkbox.setVisibility(View.INVISIBLE);
+            }
+
+            if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
+                holder.checkbox.setVisibility(View.INVISIBLE);
+            }
+
+            holder.checkbox.setChecked(marked);
+            holder.checkbox.jumpDrawablesToCurrentState();
+        }
+
+        holder.checkbox.setOnCheckedChangeListener(holder);
+    }
+
+    /*  Shows the thumbnail of images and videos if cached, else the file icon
+     *  until it is loaded. No thumbnail until the attributes are read, ie.
+     *  while 'details' is null.
+     */
+    private void bindFileIcon(Row holder, FileListItem item, ItemDetails details) {
+        if (details != null && details.thumbnailKey != null) {
+            Bitmap thumbnail = thumbnails.getCached(details.thumbnailKey);
+            if (thumbnail != null) {
+                holder.setThumbnail(thumbnail);
+                return;
+            }
+            holder.thumbnailRequest = thumbnails.load(item, details.thumbnailKey, holder);
+        }
+        holder.setIcon(R.drawable.ic_type_file, fileIconFilter);
+    }
+
+    /*  Called when the row of 'holder' is recycled.
+     */
+    void unbind(Row holder) {
+        holder.cancelThumbnail();
+    }
+
+    private CharSequence getName(FileListItem item) {
+        String name = item.getFilename();
+        int start = highlight.isEmpty() || item.isParentEntry() ? -1 : TypeAheadFilter.matchStart(item, highlight);
+        if (start < 0) {
+            return name;
+        }
+        SpannableString text = new SpannableString(name);
+        text.setSpan(highlightSpan, start, start + highlight.length(), Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        return text;
+    }
+
+    /*  The subtitle and the thumbnail key of an item are made on its first
+     *  bind only, and kept by the binder for the following ones, until the
+     *  attributes they depend on change.
+     */
+    private ItemDetails getDetails(FileListItem item) {
+        ItemDetails itemDetails = details.get(item);
+        if (itemDetails == null || !itemDetails.describes(item)) {
+            formatSubtitle(item.isDirectory(), item.getTime(), item.getSize(), item.getContentSize(),
+                    item.getItemCount());
+            boolean preview = thumbnails != null && !item.isDirectory()
+                    && ThumbnailLoader.canPreview(item.getFilename());
+            itemDetails = new ItemDetails(item, subtitle.toString(), preview ? ThumbnailLoader.key(item) : null);
+            details.put(item, itemDetails);
+            if (details.size() > MAX_DETAILS) {
+                Iterator<ItemDetails> eldest = details.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+        return itemDetails;
+    }
+
+    /*  Formats the subtitle into 'subtitle', reusing the buffers of the binder.
+     *  Nothing is allocated but for the item count of folders.
+     */
+    private void formatSubtitle(boolean directory, long time, long size, long contentSize, int itemCount) {
+        date.setTime(time);
+        dateText.setLength(0);
+        dateFormat.format(date, dateText, datePosition);
+        subtitle.setLength(0);
+        if (directory && contentSize < 0) {
+            lastEditFormat.formatTo(subtitle, dateText, null);
+            return;
+        }
+        sizeText.setLength(0);
+        Utility.getSizeFormatter(context).formatTo(sizeText, directory ? contentSize : size);
+        if (directory) {
+            sizeText.append(", ").append(context.getResources()
+                    .getQuantityString(R.plurals.folder_item_count, itemCount, itemCount));
+        }
+        lastEditWithSizeFormat.formatTo(subtitle, sizeText, dateText);
+    }
+
+    /*  The selection is the only state changed, the item may be shared with
+     *  the listing cache.
+     */
+    private void onItemChecked(FileListItem item, boolean isChecked) {
+        if (isChecked) {
+            if (properties.selection_mode == DialogConfigs.MULTI_MODE) {
+                selection.addSelectedItem(item);
+            } else {
+                selection.addSingleFile(item);
+            }
+        } else {
+            selection.removeSelectedItem(item.getLocation());
+        }
+        notifyItemChecked.notifyCheckBoxIsClicked();
+    }
+
+    /*  What a row shows of an item, with the attributes it was made from.
+     */
+    private static class ItemDetails {
+        final long time, size, contentSize;
+        final int itemCount;
+        final String subtitle;
+        //Null if the item has no thumbnail.
+        final String thumbnailKey;
+
+        ItemDetails(FileListItem item, String subtitle, String thumbnailKey) {
+            time = item.getTime();
+            size = item.getSize();
+            contentSize = item.getContentSize();
+            itemCount = item.getItemCount();
+            this.subtitle = subtitle;
+            this.thumbnailKey = thumbnailKey;
+        }
+
+        boolean describes(FileListItem item) {
+            return time == item.getTime() && size == item.getSize() && contentSize == item.getContentSize()
+                    && itemCount == item.getItemCount();
+        }
+    }
+
+    /*  Holds the views of a row, and listens to its checkbox and thumbnail for
+     *  the item currently bound, so that no listener is created per bind.
+     */
+    class Row implements CompoundButton.OnCheckedChangeListener, ThumbnailListener {
+        final ImageView icon;
+        final TextView name, type;
+        final MaterialCheckBox checkbox;
+        //Animations hold their own start time and state, each row has its own.
+        final Animation markedAnimation, unmarkedAnimation;
+        //The item bound, or the entry of a compact listing whose item is made on demand.
+        FileListItem item;
+        CompactListing listing;
+        int index;
+        private int iconRes;
+        private char[] typeChars;
+        private ThumbnailLoader.Request thumbnailRequest;
+
+        Row(View itemView) {
+            name = (TextView) itemView.findViewById(R.id.fname);
+            type = (TextView) itemView.findViewById(R.id.ftype);
+            icon = (ImageView) itemView.findViewById(R.id.image_type);
+            checkbox = itemView.findViewById(R.id.file_mark);
+            markedAnimation = AnimationUtils.loadAnimation(context, R.anim.marked_item_animation);
+            unmarkedAnimation = AnimationUtils.loadAnimation(context, R.anim.unmarked_item_animation);
+            if (thumbnails != null) {
+                icon.getLayoutParams().width = thumbnailSize;
+            }
+        }
+
+        /*  Shows 'text' through a buffer of the row, TextView keeps the chars
+         *  it is given until the next setText().
+         */
+        void setType(CharSequence text) {
+            int length = text.length();
+            if (typeChars == null || typeChars.length < length) {
+                typeChars = new char[Math.max(length, 64)];
+            }
+            TextUtils.getChars(text, 0, length, typeChars, 0);
+            type.setText(typeChars, 0, length);
+        }
+
+        void setIcon(int res, ColorFilter filter) {
+            //Setting the same resource again would decode the drawable again.
+            if (iconRes != res) {
+                iconRes = res;
+                icon.setImageResource(res);
+                icon.setColorFilter(filter);
+            }
+        }
+
+        void setThumbnail(Bitmap thumbnail) {
+            iconRes = 0;
+            icon.setColorFilter(null);
+            icon.setImageBitmap(thumbnail);
+        }
+
+        void cancelThumbnail() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+                thumbnailRequest = null;
+            }
+        }
+
+        @Override
+        public void onThumbnailLoaded(FileListItem loaded, Bitmap thumbnail) {
+            thumbnailRequest = null;
+            if (item != null && item.getLocation().equals(loaded.getLocation())) {
+                setThumbnail(thumbnail);
+            }
+        }
+
+        @Override
+        public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+            if (item == null) {
+                item = listing.toItem(index);
+            }
+            onItemChecked(item, isChecked);
+        }
+    }
+}
@@ -18,19 +18,18 @@ package com.github.angads25.filepicker.utils;
 
 import android.content.Context;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 
 import com.github.angads25.filepicker.R;
-import com.github.angads25.filepicker.model.DialogConfigs;
+import com.github.angads25.filepicker.controller.ListingBatchListener;
 import com.github.angads25.filepicker.model.DialogProperties;
 import com.github.angads25.filepicker.model.FileListItem;
+import com.github.angads25.filepicker.model.ListingStats;
 
 import java.io.File;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.Locale;
+import java.util.List;
 
 /**
  * <p>
@@ -67,141 +66,67 @@ public class Utility {
      * @param inter        The present directory to look into.
      * @param filter       Extension filter class reference, for filtering files.
      * @return ArrayList of FileListItem containing file info of current directory.
+     * @see ListingUtils#prepareFileListEntries
      */
     public static ArrayList<FileListItem> prepareFileListEntries(ArrayList<FileListItem> internalList, File inter, ExtensionFilter filter, Comparator<FileListItem> sorter) {
-        try {
-            //Check for each and every directory/file in 'inter' directory.
-            //Filter by extension using 'filter' reference.
-
-            for (File name : inter.listFiles(filter)) {
-                //If file/directory can be read by the Application
-                if (name.canRead()) {
-                    //Create a row item for the directory list and define properties.
-                    FileListItem item = new FileListItem();
-                    item.setFilename(name.getName());
-                    item.setDirectory(name.isDirectory());
-                    item.setLocation(name.getAbsolutePath());
-                    item.setTime(name.lastModified());
-                    item.setSize(name.length());
-                    //Add row to the List of directories/files
-                    internalList.add(item);
-                }
-            }
-            //Sort the files and directories in alphabetical order.
-            //See compareTo method in FileListItem class.
-            Collections.sort(internalList, sorter);
-        } catch (NullPointerException e) {   //Just dont worry, it rarely occurs.
-            e.printStackTrace();
-            internalList = new ArrayList<>();
-        }
-        return internalList;
+        return ListingUtils.prepareFileListEntries(internalList, inter, filter, sorter);
     }
 
-    public static Comparator<FileListItem> createFileListItemsComparator(DialogProperties properties) {
-        final Comparator<FileListItem> comparator;
-        final boolean reversed = properties.sortOrder == DialogConfigs.SORT_ORDER_REVERSE;
-
-        switch (properties.sortBy) {
-            case DialogConfigs.SORT_BY_LAST_MODIFIED:
-                comparator = new Comparator<FileListItem>() {
-                    @Override
-                    public int compare(FileListItem item1, FileListItem item2) {
-                        if (item2.isDirectory() && item1.isDirectory()) {
-                            if (item1.getFilename().equals("..."))
-                                return -1;
-
-                            if (item2.getFilename().equals("..."))
-                                return 1;
-
-                            return -Long.compare(item1.getTime(), item2.getTime()) * (reversed ? -1 : 1);
-                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
-                            //alphabetic order first.
-                            return -Long.compare(item1.getTime(), item2.getTime()) * (reversed ? -1 : 1);
-                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
-                            return 1;
-                        } else {   //Same as above but order of occurence is different.
-                            return -1;
-                        }
-                    }
-                };
-                break;
-            case DialogConfigs.SORT_BY_NAME:
-                comparator = new Comparator<FileListItem>() {
-                    @Override
-                    public int compare(FileListItem item1, FileListItem item2) {
-                        if (item2.isDirectory() && item1.isDirectory()) {
-                            if (item1.getFilename().equals("..."))
-                                return -1;
-
-                            if (item2.getFilename().equals("..."))
-                                return 1;
-
-                            return item1.getFilename().toLowerCase().compareTo(item2.getFilename().toLowerCase(Locale.getDefault())) * (reversed ? -1 : 1);
-                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
-                            //alphabetic order first.
-                            return item1.getFilename().toLowerCase().compareTo(item2.getFilename().toLowerCase(Locale.getDefault())) * (reversed ? -1 : 1);
-                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
-                            return 1;
-                        } else {   //Same as above but order of occurence is different.
-                            return -1;
-                        }
-                    }
-                };
-                break;
-            case DialogConfigs.SORT_BY_SIZE:
-                comparator = new Comparator<FileListItem>() {
-                    @Override
-                    public int compare(FileListItem item1, FileListItem item2) {
-                        if (item2.isDirectory() && item1.isDirectory()) {
-                            if (item1.getFilename().equals("..."))
-                                return -1;
+    /**
+     * Same as above, 'stats' is filled with the number of entries read and
+     * the number of stat calls made to read their attributes.
+     */
+    public static ArrayList<FileListItem> prepareFileListEntries(ArrayList<FileListItem> internalList, File inter, ExtensionFilter filter,
+                                                                 Comparator<FileListItem> sorter, ListingStats stats) {
+        return ListingUtils.prepareFileListEntries(internalList, inter, filter, sorter, stats);
+    }
 
-                            if (item2.getFilename().equals("..."))
-                                return 1;
+    /**
+     * @see ListingUtils#streamFileListEntries
+     */
+    public static ArrayList<FileListItem> streamFileListEntries(File inter, ExtensionFilter filter, Comparator<FileListItem> sorter,
+                                                                int firstBatchSize, int batchSize, ListingBatchListener listener,
+                                                                ListingStats stats) {
+        return ListingUtils.streamFileListEntries(inter, filter, sorter, firstBatchSize, batchSize, listener, stats);
+    }
 
-                            return item1.getFilename().toLowerCase().compareTo(item2.getFilename().toLowerCase(Locale.getDefault()));
-                        } else if (!item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is not between two directories, return the file with
-                            //alphabetic order first.
-                            return -Long.compare(item1.getSize(), item2.getSize()) * (reversed ? -1 : 1);
-                        } else if (item2.isDirectory() && !item1.isDirectory()) {   //If the comparison is between a directory and a file, return the directory.
-                            return 1;
-                        } else {   //Same as above but order of occurence is different.
-                            return -1;
-                        }
-                    }
-                };
-                break;
-            default:
-                comparator = new Comparator<FileListItem>() {
-                    @Override
-                    public int compare(FileListItem o1, FileListItem o2) {
-                        return o1.compareTo(o2);
-                    }
-                };
-        }
+    /**
+     * @see ListingUtils#mergeSortedEntries
+     */
+    public static void mergeSortedEntries(ArrayList<FileListItem> target, List<FileListItem> batch, Comparator<FileListItem> sorter) {
+        ListingUtils.mergeSortedEntries(target, batch, sorter);
+    }
 
-        return comparator;
+    /**
+     * @see ListingUtils#createFileListItemsComparator
+     */
+    public static Comparator<FileListItem> createFileListItemsComparator(DialogProperties properties) {
+        return ListingUtils.createFileListItemsComparator(properties);
     }
 
-    private static DecimalFormat sSizeDecimalFormat;
+    private static Configuration sSizeConfiguration;
+    private static SizeFormatter sSizeFormatter;
 
+    /**
+     * Formats a size in bytes with the units of the current configuration.
+     * Safe to call from any thread.
+     */
     public static String formatSize(Context c, long bytes) {
-        if (sSizeDecimalFormat == null) {
-            sSizeDecimalFormat = new DecimalFormat("#.##");
-            sSizeDecimalFormat.setDecimalFormatSymbols(DecimalFormatSymbols.getInstance(Locale.US));
-        }
-
-        String[] units = c.getResources().getStringArray(R.array.size_units);
-
-        for (int i = 0; i < units.length; i++) {
-
-            float size = (float) bytes / (float) Math.pow(1024, i);
-
-            if (size < 1024)
-                return String.format("%s %s", sSizeDecimalFormat.format(size), units[i]);
+        return getSizeFormatter(c).format(bytes);
+    }
 
+    /**
+     * @return a formatter using the size units of the current configuration.
+     * Units are read from resources once per configuration.
+     */
+    public static SizeFormatter getSizeFormatter(Context c) {
+        Configuration configuration = c.getResources().getConfiguration();
+        synchronized (Utility.class) {
+            if (sSizeFormatter == null || !configuration.equals(sSizeConfiguration)) {
+                sSizeFormatter = new SizeFormatter(c.getResources().getStringArray(R.array.size_units));
+                sSizeConfiguration = new Configuration(configuration);
+            }
+            return sSizeFormatter;
         }
-
-        return bytes + " B";
     }
 }
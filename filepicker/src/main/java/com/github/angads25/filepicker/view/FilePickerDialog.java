@@ -18,33 +18,64 @@ package com.github.angads25.filepicker.view;
 
 import android.Manifest;
 import android.app.Activity;
+import android.app.AlertDialog;
 import android.app.Dialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.os.Build;
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
+import android.view.ViewStub;
 import android.view.Window;
+import android.widget.AbsListView;
 import android.widget.AdapterView;
 import android.widget.Button;
+import android.widget.EditText;
 import android.widget.ListView;
+import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.github.angads25.filepicker.R;
 import com.github.angads25.filepicker.controller.DialogSelectionListener;
+import com.github.angads25.filepicker.controller.DirectoryChangeListener;
+import com.github.angads25.filepicker.controller.DirectoryLoadListener;
+import com.github.angads25.filepicker.controller.DirectoryLoader;
+import com.github.angads25.filepicker.controller.DirectoryObserver;
+import com.github.angads25.filepicker.controller.FileItemClickListener;
+import com.github.angads25.filepicker.controller.FileItemLongClickListener;
 import com.github.angads25.filepicker.controller.NotifyItemChecked;
+import com.github.angads25.filepicker.controller.SelectionExpansionListener;
+import com.github.angads25.filepicker.controller.SystemTracer;
+import com.github.angads25.filepicker.controller.ThumbnailLoader;
+import com.github.angads25.filepicker.controller.adapters.CompactListAdapter;
 import com.github.angads25.filepicker.controller.adapters.FileListAdapter;
+import com.github.angads25.filepicker.controller.adapters.FileListRecyclerAdapter;
+import com.github.angads25.filepicker.engine.FilePickerEngine;
+import com.github.angads25.filepicker.engine.TypeAheadFilter;
+import com.github.angads25.filepicker.model.CompactListing;
 import com.github.angads25.filepicker.model.DialogConfigs;
 import com.github.angads25.filepicker.model.DialogProperties;
+import com.github.angads25.filepicker.model.DirectoryDelta;
 import com.github.angads25.filepicker.model.FileListItem;
-import com.github.angads25.filepicker.model.MarkedItemList;
-import com.github.angads25.filepicker.utils.ExtensionFilter;
+import com.github.angads25.filepicker.model.FolderSize;
+import com.github.angads25.filepicker.model.ListingStats;
+import com.github.angads25.filepicker.model.SelectionStore;
 import com.github.angads25.filepicker.utils.Utility;
 import com.google.android.material.checkbox.MaterialCheckBox;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * <p>
@@ -52,20 +83,84 @@ import java.util.List;
  * </p>
  */
 
-public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickListener {
+public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickListener,
+        AdapterView.OnItemLongClickListener, DirectoryLoadListener, DirectoryChangeListener,
+        SelectionExpansionListener {
+    private static final long PROGRESS_DELAY_MS = 150;
+    private static final long SEARCH_DELAY_MS = 250;
+    //Rows read ahead of the visible ones, on both sides, in lazy listing mode.
+    private static final int PREFETCH_ROWS = 32;
+    //Larger listings are not diffed when filtered, see FileListRecyclerAdapter.replaceList().
+    private static final int MAX_DIFFED_FILTER_ENTRIES = 1000;
+
     private Context context;
     private ListView listView;
+    private RecyclerView recyclerView;
+    private ProgressBar progress;
     private TextView dname, dir_path, title;
+    private EditText search, filterBox;
+    private String activeQuery = "";
     private DialogProperties properties;
     private DialogSelectionListener callbacks;
     private ArrayList<FileListItem> internalList;
-    private ExtensionFilter filter;
+    //The entries of internalList shown, those matching the type-ahead filter.
+    private List<FileListItem> shownList;
+    private final TypeAheadFilter typeAhead = new TypeAheadFilter();
+    private FilePickerEngine engine;
     private FileListAdapter mFileListAdapter;
+    private CompactListAdapter mCompactAdapter;
+    private FileListRecyclerAdapter mRecyclerAdapter;
     private Button select;
     private String titleStr = null;
     private String positiveBtnNameStr = null;
     private String negativeBtnNameStr = null;
-    private File currentDirectory;
+    private DirectoryLoader loader;
+    private DirectoryObserver observer;
+    private ThumbnailLoader thumbnails;
+    //Shown while the files of a folder are being selected.
+    private AlertDialog expansionDialog;
+    private final SelectionStore selection = new SelectionStore();
+    private boolean replaceOnNextEntries;
+    private final HashSet<String> attributesRequested = new HashSet<>();
+    //Navigation measured for the metrics listener: its start, and the time to its first bound row.
+    private boolean measuring;
+    private long navigationStart;
+    private long firstBindNanos;
+    private ListingStats navigationStats;
+    private final Runnable recordFirstBind = new Runnable() {
+        @Override
+        public void run() {
+            if (measuring && firstBindNanos < 0) {
+                firstBindNanos = System.nanoTime() - navigationStart;
+                reportMetrics();
+            }
+        }
+    };
+    private final Runnable showProgress = new Runnable() {
+        @Override
+        public void run() {
+            if (progress != null) {
+                progress.setVisibility(View.VISIBLE);
+            }
+        }
+    };
+    private final Runnable runSearch = new Runnable() {
+        @Override
+        public void run() {
+            String query = search.getText().toString().trim();
+            if (query.equals(activeQuery)) {
+                return;
+            }
+            if (query.isEmpty()) {
+                loadCurrentDirectory();
+            } else {
+                //Supersedes the listing or search in flight.
+                activeQuery = query;
+                measuring = false;
+                loader.search(engine, engine.getCurrentDirectory(), query, FilePickerDialog.this);
+            }
+        }
+    };
 
     public static final int EXTERNAL_READ_PERMISSION_GRANT = 112;
 
@@ -73,24 +168,33 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
         super(context, R.style.FilePickerDialog_DefaultTheme);
         this.context = context;
         properties = new DialogProperties();
-        filter = new ExtensionFilter(properties);
+        engine = new FilePickerEngine(properties, selection);
         internalList = new ArrayList<>();
+        shownList = internalList;
+        SystemTracer.installDefault();
+        loader = new DirectoryLoader();
     }
 
     public FilePickerDialog(Context context, DialogProperties properties) {
         super(context, R.style.FilePickerDialog_DefaultTheme);
         this.context = context;
         this.properties = properties;
-        filter = new ExtensionFilter(properties);
+        engine = new FilePickerEngine(properties, selection);
         internalList = new ArrayList<>();
+        shownList = internalList;
+        SystemTracer.installDefault();
+        loader = new DirectoryLoader();
     }
 
     public FilePickerDialog(Context context, DialogProperties properties, int themeResId) {
         super(context, themeResId);
         this.context = context;
         this.properties = properties;
-        filter = new ExtensionFilter(properties);
+        engine = new FilePickerEngine(properties, selection);
         internalList = new ArrayList<>();
+        shownList = internalList;
+        SystemTracer.installDefault();
+        loader = new DirectoryLoader();
     }
 
     @Override
@@ -99,9 +203,10 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
         requestWindowFeature(Window.FEATURE_NO_TITLE);
         setContentView(R.layout.dialog_main);
         listView = findViewById(R.id.fileList);
+        progress = findViewById(R.id.progress);
         select = findViewById(R.id.select);
-        int size = MarkedItemList.getFileCount();
-        if (size == 0 && !(properties.selection_mode == DialogConfigs.SINGLE_MODE && (properties.selection_type == DialogConfigs.DIR_SELECT || properties.selection_type == DialogConfigs.FILE_AND_DIR_SELECT))) {
+        int size = selection.getFileCount();
+        if (size == 0 && !engine.selectsCurrentDirectory()) {
             select.setEnabled(false);
         }
         if (properties.selection_mode == DialogConfigs.SINGLE_MODE && properties.selection_type == DialogConfigs.FILE_SELECT)
@@ -120,16 +225,10 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
             @Override
             public void onClick(View view) {
                 /*  Select Button is clicked. Get the array of all selected items
-                 *  from MarkedItemList singleton.
+                 *  from the selection store.
                  */
-                if (properties.selection_mode == DialogConfigs.SINGLE_MODE && (properties.selection_type == DialogConfigs.DIR_SELECT || properties.selection_type == DialogConfigs.FILE_AND_DIR_SELECT)) {
-                    FileListItem item = new FileListItem();
-                    item.setFilename(currentDirectory.getName());
-                    item.setDirectory(currentDirectory.isDirectory());
-                    item.setLocation(currentDirectory.getAbsolutePath());
-                    item.setTime(currentDirectory.lastModified());
-                    item.setSize(currentDirectory.length());
-                    MarkedItemList.addSingleFile(item);
+                if (engine.selectsCurrentDirectory()) {
+                    engine.selectCurrentDirectory();
                 }
                 finishSelection();
             }
@@ -140,33 +239,140 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
                 cancel();
             }
         });
-        mFileListAdapter = new FileListAdapter(internalList, context, properties);
-        mFileListAdapter.setNotifyItemCheckedListener(new NotifyItemChecked() {
+        NotifyItemChecked notifyItemChecked = new NotifyItemChecked() {
             @Override
             public void notifyCheckBoxIsClicked() {
                 /*  Handler function, called when a checkbox is checked ie. a file is
                  *  selected.
                  */
-                positiveBtnNameStr = positiveBtnNameStr == null ?
-                        context.getResources().getString(R.string.choose_button_label) : positiveBtnNameStr;
-                int size = MarkedItemList.getFileCount();
-                if (size == 0) {
-                    select.setEnabled(false);
-                    select.setText(positiveBtnNameStr);
-                } else {
-                    select.setEnabled(true);
-                    String button_label = positiveBtnNameStr + " (" + size + ") ";
-                    select.setText(button_label);
-                }
+                updateSelectButton();
                 if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
                     /*  If a single file has to be selected, clear the previously checked
                      *  checkbox from the list.
                      */
-                    mFileListAdapter.notifyDataSetChanged();
+                    if (mRecyclerAdapter != null) {
+                        mRecyclerAdapter.notifyItemRangeChanged(0, mRecyclerAdapter.getItemCount());
+                    } else {
+                        mFileListAdapter.notifyDataSetChanged();
+                        if (mCompactAdapter != null) {
+                            mCompactAdapter.notifyDataSetChanged();
+                        }
+                    }
                 }
             }
-        });
-        listView.setAdapter(mFileListAdapter);
+        };
+        if (properties.thumbnails) {
+            thumbnails = new ThumbnailLoader(context, context.getResources().getDimensionPixelSize(R.dimen.thumbnail_size));
+        }
+        //Compact listings are always shown in the ListView.
+        if (properties.listType == DialogConfigs.LIST_TYPE_RECYCLER_VIEW && !isCompact()) {
+            listView.setVisibility(View.GONE);
+            ViewStub stub = findViewById(R.id.fileRecyclerStub);
+            recyclerView = (RecyclerView) stub.inflate();
+            final LinearLayoutManager layoutManager = new LinearLayoutManager(context);
+            recyclerView.setLayoutManager(layoutManager);
+            recyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                    if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                        prefetchVisibleDirectories(layoutManager.findFirstVisibleItemPosition());
+                    }
+                }
+
+                @Override
+                public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                    //Also called after a layout changed the visible rows.
+                    readVisibleAttributes(layoutManager.findFirstVisibleItemPosition(),
+                            layoutManager.findLastVisibleItemPosition());
+                }
+            });
+            mRecyclerAdapter = new FileListRecyclerAdapter(context, properties, selection);
+            mRecyclerAdapter.setNotifyItemCheckedListener(notifyItemChecked);
+            mRecyclerAdapter.setThumbnailLoader(thumbnails);
+            mRecyclerAdapter.setFileItemClickListener(new FileItemClickListener() {
+                @Override
+                public void onFileItemClick(View view, int position, FileListItem item) {
+                    onFileItemClicked(view, item);
+                }
+            });
+            mRecyclerAdapter.setFileItemLongClickListener(new FileItemLongClickListener() {
+                @Override
+                public boolean onFileItemLongClick(View view, int position, FileListItem item) {
+                    return onFileItemLongClicked(item);
+                }
+            });
+            recyclerView.setAdapter(mRecyclerAdapter);
+        } else {
+            mFileListAdapter = new FileListAdapter(internalList, context, properties, selection);
+            mFileListAdapter.setNotifyItemCheckedListener(notifyItemChecked);
+            mFileListAdapter.setThumbnailLoader(thumbnails);
+            listView.setAdapter(mFileListAdapter);
+            if (isCompact()) {
+                mCompactAdapter = new CompactListAdapter(context, properties, selection);
+                mCompactAdapter.setNotifyItemCheckedListener(notifyItemChecked);
+            }
+            listView.setOnScrollListener(new AbsListView.OnScrollListener() {
+                @Override
+                public void onScrollStateChanged(AbsListView view, int scrollState) {
+                    if (scrollState == SCROLL_STATE_IDLE) {
+                        prefetchVisibleDirectories(view.getFirstVisiblePosition());
+                    }
+                }
+
+                @Override
+                public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+                    //Also called after a layout changed the visible rows.
+                    readVisibleAttributes(firstVisibleItem, firstVisibleItem + visibleItemCount - 1);
+                }
+            });
+        }
+
+        search = findViewById(R.id.search);
+        if (properties.searchEnabled) {
+            search.setVisibility(View.VISIBLE);
+            search.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    //Wait for a pause in typing, so that every key doesn't start a walk.
+                    search.removeCallbacks(runSearch);
+                    search.postDelayed(runSearch, SEARCH_DELAY_MS);
+                }
+            });
+        }
+
+        filterBox = findViewById(R.id.filter);
+        if (properties.filterEnabled && !isCompact()) {
+            filterBox.setVisibility(View.VISIBLE);
+            filterBox.addTextChangedListener(new TextWatcher() {
+                @Override
+                public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                }
+
+                @Override
+                public void onTextChanged(CharSequence s, int start, int before, int count) {
+                }
+
+                @Override
+                public void afterTextChanged(Editable s) {
+                    //The list is filtered in place on every key, nothing is read again.
+                    publishList(internalList.size() > MAX_DIFFED_FILTER_ENTRIES);
+                    if (mRecyclerAdapter != null) {
+                        mRecyclerAdapter.setHighlight(typeAhead.getQuery());
+                    } else {
+                        mFileListAdapter.setHighlight(typeAhead.getQuery());
+                    }
+                    scrollToTop();
+                }
+            });
+        }
 
         //Title method added in version 1.0.5
         setTitle();
@@ -205,79 +411,461 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
         select.setText(positiveBtnNameStr);
         if (Utility.checkStorageAccessPermissions(context)) {
             internalList.clear();
-            if (properties.offset.isDirectory() && validateOffsetPath()) {
-                currentDirectory = new File(properties.offset.getAbsolutePath());
-                FileListItem parent = new FileListItem();
-                parent.setFilename(context.getString(R.string.label_parent_dir));
-                parent.setDirectory(true);
-                parent.setLocation(currentDirectory.getParentFile().getAbsolutePath());
-                parent.setTime(currentDirectory.lastModified());
-                parent.setSize(currentDirectory.length());
-                internalList.add(parent);
-            } else if (properties.root.exists() && properties.root.isDirectory()) {
-                currentDirectory = new File(properties.root.getAbsolutePath());
+            notifyListChanged();
+            engine.start();
+            loadCurrentDirectory();
+            listView.setOnItemClickListener(this);
+            listView.setOnItemLongClickListener(this);
+        }
+    }
+
+    /**
+     * Lists the current directory of the engine in background. The current
+     * list stays visible until the new one is published.
+     */
+    private void loadCurrentDirectory() {
+        File directory = engine.getCurrentDirectory();
+        //Navigating ends the search.
+        activeQuery = "";
+        if (search.length() > 0) {
+            search.getText().clear();
+        }
+        if (filterBox.length() > 0) {
+            filterBox.getText().clear();
+        }
+        dname.setText(directory.getName());
+        dir_path.setText(directory.getAbsolutePath());
+        setTitle();
+        watch(directory);
+        FileListItem parent = engine.createParentEntry(context.getString(R.string.label_parent_dir));
+        measuring = properties.metricsListener != null;
+        navigationStart = System.nanoTime();
+        firstBindNanos = -1;
+        navigationStats = null;
+        if (isCompact()) {
+            loader.loadCompact(engine, directory, this);
+        } else if (properties.listingMode == DialogConfigs.LISTING_MODE_STREAMING) {
+            loader.stream(engine, directory, parent, this);
+        } else if (properties.listingMode == DialogConfigs.LISTING_MODE_LAZY && engine.canListLazily()) {
+            loader.loadLazily(engine, directory, parent, this);
+        } else {
+            //Also lazy listing mode when sorting by date or size, which needs every attribute.
+            loader.load(engine, directory, parent, this);
+        }
+    }
+
+    /*  Watches 'directory' instead of the previous one. Watching starts before
+     *  the listing, so that no change made meanwhile is missed.
+     */
+    private void watch(File directory) {
+        if (observer != null) {
+            if (observer.getDirectory().equals(directory)) {
+                return;
+            }
+            observer.stopWatching();
+            observer = null;
+        }
+        if (properties.liveUpdates) {
+            observer = new DirectoryObserver(directory, DirectoryObserver.DEFAULT_QUIET_PERIOD_MS, this);
+            observer.startWatching();
+        }
+    }
+
+    @Override
+    public void onDirectoryChanged(File directory, Set<String> names) {
+        if (!directory.equals(engine.getCurrentDirectory()) || !activeQuery.isEmpty()) {
+            //Search results are not updated, the directory is listed again once the search ends.
+            return;
+        }
+        if (names == null) {
+            loadCurrentDirectory();
+        } else if (isCompact()) {
+            //Compact listings are not patched, the directory is listed again in place.
+            loader.loadCompact(engine, directory, this);
+            replaceOnNextEntries = false;
+        } else {
+            loader.refresh(engine, directory, names, this);
+        }
+    }
+
+    /*  Publishes the changes made to internalList. In compact listing mode
+     *  internalList holds search results, shown instead of the compact listing.
+     */
+    private void notifyListChanged() {
+        notifyListChanged(false);
+    }
+
+    /*  As notifyListChanged(), 'replaced' telling that internalList holds
+     *  other entries altogether, eg. those of another directory.
+     */
+    private void notifyListChanged(boolean replaced) {
+        //The entries changed, the type-ahead filter scans them whole again.
+        typeAhead.setSource(internalList);
+        publishList(replaced);
+    }
+
+    /*  Shows the entries of internalList matching the text of the filter box,
+     *  all of them if it is empty. The ListView adapter holds the list shown
+     *  itself, the RecyclerView one gets a snapshot, diffed with the rows shown
+     *  unless 'replace' is set.
+     */
+    private void publishList(boolean replace) {
+        shownList = typeAhead.filter(filterBox != null ? filterBox.getText().toString() : "");
+        if (mRecyclerAdapter != null) {
+            if (replace) {
+                mRecyclerAdapter.replaceList(new ArrayList<>(shownList));
             } else {
-                currentDirectory = new File(properties.error_dir.getAbsolutePath());
+                mRecyclerAdapter.submitList(new ArrayList<>(shownList));
             }
-            dname.setText(currentDirectory.getName());
-            dir_path.setText(currentDirectory.getAbsolutePath());
-            setTitle();
-            internalList = Utility.prepareFileListEntries(internalList, currentDirectory, filter, Utility.createFileListItemsComparator(properties));
+        } else {
+            if (listView.getAdapter() != mFileListAdapter) {
+                listView.setAdapter(mFileListAdapter);
+            }
+            mFileListAdapter.setItems(shownList);
             mFileListAdapter.notifyDataSetChanged();
-            listView.setOnItemClickListener(this);
         }
     }
 
-    private boolean validateOffsetPath() {
-        String offset_path = properties.offset.getAbsolutePath();
-        String root_path = properties.root.getAbsolutePath();
-        return !offset_path.equals(root_path) && offset_path.contains(root_path);
+    private boolean isCompact() {
+        return properties.listingMode == DialogConfigs.LISTING_MODE_COMPACT;
+    }
+
+    @Override
+    public void onCompactListingLoaded(File directory, CompactListing listing) {
+        progress.removeCallbacks(showProgress);
+        progress.setVisibility(View.GONE);
+        internalList.clear();
+        mCompactAdapter.setListing(engine.createParentEntry(context.getString(R.string.label_parent_dir)), listing);
+        if (listView.getAdapter() != mCompactAdapter) {
+            listView.setAdapter(mCompactAdapter);
+        }
+        if (replaceOnNextEntries) {
+            replaceOnNextEntries = false;
+            scrollToTop();
+            expectFirstBind();
+        }
+        if (measuring) {
+            navigationStats = loader.getLastListingStats();
+            if (mCompactAdapter.isEmpty()) {
+                //No row to bind.
+                recordFirstBind.run();
+            } else {
+                reportMetrics();
+            }
+        }
+    }
+
+    private void scrollToTop() {
+        if (recyclerView != null) {
+            recyclerView.scrollToPosition(0);
+        } else {
+            listView.setSelection(0);
+        }
+    }
+
+    /*  Lazy listing mode: reads the attributes of the rows in sight, and of
+     *  those around, unless already requested.
+     */
+    private void readVisibleAttributes(int first, int last) {
+        if (properties.listingMode != DialogConfigs.LISTING_MODE_LAZY || first < 0) {
+            return;
+        }
+        int from = Math.max(0, first - PREFETCH_ROWS);
+        int to = Math.min(shownList.size() - 1, last + PREFETCH_ROWS);
+        ArrayList<FileListItem> pending = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            FileListItem item = shownList.get(i);
+            if (item.isAttributesPending() && attributesRequested.add(item.getLocation())) {
+                pending.add(item);
+            }
+        }
+        if (!pending.isEmpty()) {
+            loader.readAttributes(engine, engine.getCurrentDirectory(), pending, this);
+        }
+    }
+
+    @Override
+    public void onAttributesRead(File directory, List<FileListItem> entries) {
+        HashMap<String, FileListItem> byLocation = new HashMap<>();
+        for (FileListItem entry : entries) {
+            byLocation.put(entry.getLocation(), entry);
+        }
+        for (int i = 0; i < internalList.size(); i++) {
+            FileListItem item = internalList.get(i);
+            FileListItem read = item.isAttributesPending() ? byLocation.get(item.getLocation()) : null;
+            if (read != null) {
+                internalList.set(i, read);
+            }
+        }
+        notifyListChanged();
+    }
+
+    @Override
+    public void onLoadStarted(File directory) {
+        replaceOnNextEntries = true;
+        attributesRequested.clear();
+        progress.removeCallbacks(showProgress);
+        //Only show the progress for slow loads, so that fast ones don't flicker.
+        progress.postDelayed(showProgress, PROGRESS_DELAY_MS);
+    }
+
+    @Override
+    public void onEntriesLoaded(File directory, List<FileListItem> entries) {
+        boolean replaced = replaceOnNextEntries;
+        if (replaced) {
+            //First rows of a new directory, drop the previous one.
+            replaceOnNextEntries = false;
+            progress.removeCallbacks(showProgress);
+            progress.setVisibility(View.GONE);
+            internalList.clear();
+            scrollToTop();
+            expectFirstBind();
+        }
+        Utility.mergeSortedEntries(internalList, entries, engine.getSorter());
+        notifyListChanged(replaced);
+    }
+
+    @Override
+    public void onLoadFinished(File directory, ArrayList<FileListItem> entries) {
+        progress.removeCallbacks(showProgress);
+        progress.setVisibility(View.GONE);
+        //The ListView adapter may hold internalList itself, so its contents are replaced in place.
+        internalList.clear();
+        internalList.addAll(entries);
+        //Another directory is not diffed with the previous one, a refresh of the same one is.
+        notifyListChanged(replaceOnNextEntries);
+        int firstVisible;
+        if (replaceOnNextEntries) {
+            replaceOnNextEntries = false;
+            scrollToTop();
+            expectFirstBind();
+            firstVisible = 0;
+        } else {
+            firstVisible = recyclerView != null ? ((LinearLayoutManager) recyclerView.getLayoutManager())
+                    .findFirstVisibleItemPosition() : listView.getFirstVisiblePosition();
+        }
+        if (measuring) {
+            navigationStats = loader.getLastListingStats();
+            if (internalList.isEmpty()) {
+                //No row to bind.
+                recordFirstBind.run();
+            } else {
+                reportMetrics();
+            }
+        }
+        if (engine.needsFolderSizes()) {
+            loader.computeFolderSizes(engine, directory, internalList, this);
+        }
+        prefetchVisibleDirectories(firstVisible);
+    }
+
+    /*  Lists the first subdirectories in sight ahead of a tap on one of them,
+     *  once the directory shown has been listed. Search results and compact
+     *  listings are left alone, the latter are not cached.
+     */
+    private void prefetchVisibleDirectories(int first) {
+        if (!properties.prefetchDirectories || properties.listingCache == null || isCompact()
+                || !activeQuery.isEmpty() || loader.isLoading() || first < 0 || first >= shownList.size()) {
+            return;
+        }
+        loader.prefetch(engine, shownList.subList(first, shownList.size()));
+    }
+
+    /*  The first rows of the directory navigated to are being shown, the
+     *  time to their first bind is recorded.
+     */
+    private void expectFirstBind() {
+        if (!measuring) {
+            return;
+        }
+        if (mRecyclerAdapter != null) {
+            mRecyclerAdapter.runOnNextBind(recordFirstBind);
+        } else if (mCompactAdapter != null && listView.getAdapter() == mCompactAdapter) {
+            mCompactAdapter.runOnNextBind(recordFirstBind);
+        } else {
+            mFileListAdapter.runOnNextBind(recordFirstBind);
+        }
+    }
+
+    /*  Reports the navigation once both its listing and its first bind are done.
+     */
+    private void reportMetrics() {
+        if (!measuring || navigationStats == null || firstBindNanos < 0) {
+            return;
+        }
+        measuring = false;
+        navigationStats.setFirstBindTimeNanos(firstBindNanos);
+        properties.metricsListener.onDirectoryShown(engine.getCurrentDirectory(), navigationStats);
+    }
+
+    @Override
+    public void onEntriesChanged(File directory, DirectoryDelta delta) {
+        //Only the changed rows are replaced, the rest of the list is kept as is.
+        engine.applyChanges(internalList, delta);
+        notifyListChanged();
+        if (engine.needsFolderSizes()) {
+            //Unchanged directories are known already, only the new ones are walked.
+            loader.computeFolderSizes(engine, directory, internalList, this);
+        }
+    }
+
+    @Override
+    public void onFolderSizesComputed(File directory, List<FolderSize> sizes) {
+        if (engine.applyFolderSizes(internalList, sizes)) {
+            notifyListChanged();
+        }
+    }
+
+    @Override
+    public void onFolderSizesSorted(File directory, ArrayList<FileListItem> entries) {
+        //The ListView adapter may hold internalList itself, so its contents are replaced in place.
+        internalList.clear();
+        internalList.addAll(entries);
+        //Most rows may move, diffing them would cost more than showing them again.
+        notifyListChanged(true);
     }
 
     @Override
     public void onItemClick(AdapterView<?> adapterView, View view, int i, long l) {
-        if (internalList.size() > i) {
-            FileListItem fitem = internalList.get(i);
-            if (fitem.isDirectory()) {
-                if (new File(fitem.getLocation()).canRead()) {
-                    currentDirectory = new File(fitem.getLocation());
-                    dname.setText(currentDirectory.getName());
-                    setTitle();
-                    dir_path.setText(currentDirectory.getAbsolutePath());
-                    internalList.clear();
-                    if (!currentDirectory.getName().equals(properties.root.getName())) {
-                        FileListItem parent = new FileListItem();
-                        parent.setFilename(context.getString(R.string.label_parent_dir));
-                        parent.setDirectory(true);
-                        parent.setLocation(currentDirectory.getParentFile().getAbsolutePath());
-                        parent.setTime(currentDirectory.lastModified());
-                        parent.setSize(currentDirectory.length());
-                        internalList.add(parent);
+        if (mCompactAdapter != null && adapterView.getAdapter() == mCompactAdapter) {
+            onFileItemClicked(view, mCompactAdapter.getItem(i));
+        } else if (shownList.size() > i) {
+            onFileItemClicked(view, shownList.get(i));
+        }
+    }
+
+    @Override
+    public boolean onItemLongClick(AdapterView<?> adapterView, View view, int i, long l) {
+        if (mCompactAdapter != null && adapterView.getAdapter() == mCompactAdapter) {
+            return onFileItemLongClicked(mCompactAdapter.getItem(i));
+        }
+        return shownList.size() > i && onFileItemLongClicked(shownList.get(i));
+    }
+
+    /*  Long pressing a directory selects the files of its subtree, when enabled.
+     */
+    private boolean onFileItemLongClicked(FileListItem fitem) {
+        if (!properties.selectFolderContents || !engine.canSelectContents()
+                || !fitem.isDirectory() || fitem.isParentEntry()) {
+            return false;
+        }
+        dismissExpansionDialog();
+        expansionDialog = new AlertDialog.Builder(context)
+                .setTitle(R.string.select_contents_title)
+                .setMessage(fitem.getFilename())
+                .setCancelable(false)
+                .setNegativeButton(R.string.cancel_button_label, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        loader.cancelExpansion();
+                        expansionDialog = null;
+                        //The files may have been selected just before the cancel.
+                        refreshSelection();
                     }
-                    internalList = Utility.prepareFileListEntries(internalList, currentDirectory, filter, Utility.createFileListItemsComparator(properties));
-                    mFileListAdapter.notifyDataSetChanged();
-                } else {
-                    Toast.makeText(context, R.string.error_dir_access, Toast.LENGTH_SHORT).show();
-                }
+                })
+                .show();
+        loader.expand(engine, new File(fitem.getLocation()), this);
+        return true;
+    }
+
+    @Override
+    public void onExpansionProgress(File directory, int fileCount, long totalSize) {
+        if (expansionDialog != null) {
+            expansionDialog.setMessage(context.getResources().getQuantityString(R.plurals.selected_file_count,
+                    fileCount, fileCount, Utility.formatSize(context, totalSize)));
+        }
+    }
+
+    @Override
+    public void onExpansionFinished(File directory, int fileCount, long totalSize) {
+        dismissExpansionDialog();
+        refreshSelection();
+    }
+
+    /*  Shows the selection changed other than through the checkboxes.
+     */
+    private void refreshSelection() {
+        updateSelectButton();
+        if (mRecyclerAdapter != null) {
+            mRecyclerAdapter.notifyItemRangeChanged(0, mRecyclerAdapter.getItemCount());
+        } else {
+            mFileListAdapter.notifyDataSetChanged();
+            if (mCompactAdapter != null) {
+                mCompactAdapter.notifyDataSetChanged();
+            }
+        }
+    }
+
+    private void dismissExpansionDialog() {
+        if (expansionDialog != null) {
+            expansionDialog.dismiss();
+            expansionDialog = null;
+        }
+    }
+
+    /*  Shows the number of files selected on the select button, disabled while
+     *  there is none.
+     */
+    private void updateSelectButton() {
+        positiveBtnNameStr = positiveBtnNameStr == null ?
+                context.getResources().getString(R.string.choose_button_label) : positiveBtnNameStr;
+        int size = selection.getFileCount();
+        if (size == 0) {
+            select.setEnabled(false);
+            select.setText(positiveBtnNameStr);
+        } else {
+            select.setEnabled(true);
+            String button_label = positiveBtnNameStr + " (" + size + ") ";
+            select.setText(button_label);
+        }
+    }
+
+    private void onFileItemClicked(View view, FileListItem fitem) {
+        if (fitem.isDirectory()) {
+            if (engine.navigateTo(new File(fitem.getLocation()))) {
+                loadCurrentDirectory();
             } else {
-                if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
-                    MarkedItemList.addSingleFile(fitem);
-                    finishSelection();
-                } else {
-                    MaterialCheckBox fmark = view.findViewById(R.id.file_mark);
-                    fmark.performClick();
-                }
+                Toast.makeText(context, R.string.error_dir_access, Toast.LENGTH_SHORT).show();
+            }
+        } else {
+            if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
+                engine.select(fitem);
+                finishSelection();
+            } else {
+                MaterialCheckBox fmark = view.findViewById(R.id.file_mark);
+                fmark.performClick();
             }
         }
     }
 
+    /**
+     * @return the counters of the last directory listing, or null if none completed yet.
+     */
+    public ListingStats getLastListingStats() {
+        return loader.getLastListingStats();
+    }
+
+    /**
+     * @return the files selected in this dialog. Safe to read from any thread.
+     */
+    public SelectionStore getSelectionStore() {
+        return selection;
+    }
+
+    /**
+     * @return the engine behind this dialog, configured by its properties.
+     */
+    public FilePickerEngine getEngine() {
+        return engine;
+    }
+
     public DialogProperties getProperties() {
         return properties;
     }
 
     void setProperties(DialogProperties properties) {
         this.properties = properties;
-        filter = new ExtensionFilter(properties);
+        engine = new FilePickerEngine(properties, selection);
     }
 
     public void setDialogSelectionListener(DialogSelectionListener callbacks) {
@@ -311,97 +899,7 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
     }
 
     public void markFiles(List<String> paths) {
-        if (paths != null && paths.size() > 0) {
-            if (properties.selection_mode == DialogConfigs.SINGLE_MODE) {
-                File temp = new File(paths.get(0));
-                switch (properties.selection_type) {
-                    case DialogConfigs.DIR_SELECT:
-                        if (temp.exists() && temp.isDirectory()) {
-                            FileListItem item = new FileListItem();
-                            item.setFilename(temp.getName());
-                            item.setDirectory(temp.isDirectory());
-                            item.setMarked(true);
-                            item.setTime(temp.lastModified());
-                            item.setLocation(temp.getAbsolutePath());
-                            item.setSize(temp.length());
-                            MarkedItemList.addSelectedItem(item);
-                        }
-                        break;
-
-                    case DialogConfigs.FILE_SELECT:
-                        if (temp.exists() && temp.isFile()) {
-                            FileListItem item = new FileListItem();
-                            item.setFilename(temp.getName());
-                            item.setDirectory(temp.isDirectory());
-                            item.setMarked(true);
-                            item.setTime(temp.lastModified());
-                            item.setLocation(temp.getAbsolutePath());
-                            item.setSize(temp.length());
-                            MarkedItemList.addSelectedItem(item);
-                        }
-                        break;
-
-                    case DialogConfigs.FILE_AND_DIR_SELECT:
-                        if (temp.exists()) {
-                            FileListItem item = new FileListItem();
-                            item.setFilename(temp.getName());
-                            item.setDirectory(temp.isDirectory());
-                            item.setMarked(true);
-                            item.setTime(temp.lastModified());
-                            item.setLocation(temp.getAbsolutePath());
-                            item.setSize(temp.length());
-                            MarkedItemList.addSelectedItem(item);
-                        }
-                        break;
-                }
-            } else {
-                for (String path : paths) {
-                    switch (properties.selection_type) {
-                        case DialogConfigs.DIR_SELECT:
-                            File temp = new File(path);
-                            if (temp.exists() && temp.isDirectory()) {
-                                FileListItem item = new FileListItem();
-                                item.setFilename(temp.getName());
-                                item.setDirectory(temp.isDirectory());
-                                item.setMarked(true);
-                                item.setTime(temp.lastModified());
-                                item.setLocation(temp.getAbsolutePath());
-                                item.setSize(temp.length());
-                                MarkedItemList.addSelectedItem(item);
-                            }
-                            break;
-
-                        case DialogConfigs.FILE_SELECT:
-                            temp = new File(path);
-                            if (temp.exists() && temp.isFile()) {
-                                FileListItem item = new FileListItem();
-                                item.setFilename(temp.getName());
-                                item.setDirectory(temp.isDirectory());
-                                item.setMarked(true);
-                                item.setTime(temp.lastModified());
-                                item.setLocation(temp.getAbsolutePath());
-                                item.setSize(temp.length());
-                                MarkedItemList.addSelectedItem(item);
-                            }
-                            break;
-
-                        case DialogConfigs.FILE_AND_DIR_SELECT:
-                            temp = new File(path);
-                            if (temp.exists() && (temp.isFile() || temp.isDirectory())) {
-                                FileListItem item = new FileListItem();
-                                item.setFilename(temp.getName());
-                                item.setDirectory(temp.isDirectory());
-                                item.setMarked(true);
-                                item.setTime(temp.lastModified());
-                                item.setLocation(temp.getAbsolutePath());
-                                item.setSize(temp.length());
-                                MarkedItemList.addSelectedItem(item);
-                            }
-                            break;
-                    }
-                }
-            }
-        }
+        engine.markPaths(paths);
     }
 
     @Override
@@ -415,7 +913,7 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
             positiveBtnNameStr = positiveBtnNameStr == null ?
                     context.getResources().getString(R.string.choose_button_label) : positiveBtnNameStr;
             select.setText(positiveBtnNameStr);
-            int size = MarkedItemList.getFileCount();
+            int size = selection.getFileCount();
             if (size == 0) {
                 select.setText(positiveBtnNameStr);
             } else {
@@ -427,45 +925,45 @@ public class FilePickerDialog extends Dialog implements AdapterView.OnItemClickL
 
     @Override
     public void onBackPressed() {
-        //currentDirName is dependent on dname
-        String currentDirName = dname.getText().toString();
-        if (internalList.size() > 0) {
-            FileListItem fitem = internalList.get(0);
-            File currLoc = new File(fitem.getLocation());
-            if (currentDirName.equals(properties.root.getName()) ||
-                    !currLoc.canRead()) {
-                super.onBackPressed();
-            } else {
-                dname.setText(currLoc.getName());
-                dir_path.setText(currLoc.getAbsolutePath());
-                internalList.clear();
-                if (!currLoc.getName().equals(properties.root.getName())) {
-                    FileListItem parent = new FileListItem();
-                    parent.setFilename(context.getString(R.string.label_parent_dir));
-                    parent.setDirectory(true);
-                    parent.setLocation(currLoc.getParentFile().getAbsolutePath());
-                    parent.setTime(currLoc.lastModified());
-                    parent.setSize(currLoc.length());
-                    internalList.add(parent);
-                }
-                internalList = Utility.prepareFileListEntries(internalList, currLoc, filter, Utility.createFileListItemsComparator(properties));
-                mFileListAdapter.notifyDataSetChanged();
-            }
-            setTitle();
-        } else {
+        if (!activeQuery.isEmpty()) {
+            //Back to the listing of the directory that was searched.
+            loadCurrentDirectory();
+            return;
+        }
+        //The parent is derived from the current directory rather than from the
+        //list, which may still hold the previous directory while a load is in flight.
+        if (engine.navigateUp() == null) {
             super.onBackPressed();
+        } else {
+            loadCurrentDirectory();
         }
     }
 
     @Override
     public void dismiss() {
-        MarkedItemList.clearSelectionList();
+        loader.cancel();
+        loader.cancelExpansion();
+        dismissExpansionDialog();
+        if (observer != null) {
+            observer.stopWatching();
+            observer = null;
+        }
+        if (progress != null) {
+            progress.removeCallbacks(showProgress);
+        }
+        if (search != null) {
+            search.removeCallbacks(runSearch);
+        }
+        if (thumbnails != null) {
+            thumbnails.cancelAll();
+        }
+        selection.clearSelectionList();
         internalList.clear();
         super.dismiss();
     }
 
     private void finishSelection() {
-        String paths[] = MarkedItemList.getSelectedPaths();
+        String paths[] = selection.getSelectedPaths();
         if (callbacks != null)
             callbacks.onSelectedFilePaths(paths);
 